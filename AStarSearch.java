@@ -0,0 +1,31 @@
+/*
+  A* search: uniform-cost search ordered by g + h instead of g. All options
+  of UniformCostSearch apply; --heuristic selects the heuristic of the
+  state space (for elevators: blind, boarding, travel or pdb).
+*/
+public class AStarSearch extends UniformCostSearch {
+
+    public AStarSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public AStarSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        heuristic = createHeuristic(true);
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        super.stateSpaceChanged();
+        heuristic = createHeuristic(true);
+    }
+
+    public static void main(String args[]){
+        try {
+            AStarSearch search = new AStarSearch(args);
+            search.runSearchAlgorithm();
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+
+
+/*
+  Anytime weighted A*: the open list is ordered by g + w * h with
+  --weight=w (default 2), which finds a first plan after far fewer
+  expansions than A*. The search then goes on with the same open list and
+  closed list, and every cheaper plan it finds is passed to the
+  SolutionListener together with a proven lower bound on the optimal
+  cost. Nodes with g + h at least the cost of the best plan so far are
+  dropped, and states reached more cheaply after their expansion are
+  queued again.
+
+  The lower bound is the smallest g + h of all queued nodes, which needs
+  an admissible heuristic. It is kept cheaply by counting the queued
+  nodes of every g + h value. Once it reaches the cost of the best plan,
+  that plan is optimal and the search ends. With --bound=b it already ends
+  when the best plan costs at most b times the lower bound (default 1).
+
+  If a budget (--node-limit, --time-limit, --memory-limit, or running out
+  of heap) ends the search after a plan was found, solve() returns the
+  best plan with status SOLVED and lowerBound() tells how far from
+  optimal it can be. --heuristic and --open are those of AStarSearch.
+*/
+public class AnytimeSearch extends SearchAlgorithmBase {
+
+    public interface SolutionListener {
+        // called for every plan that is cheaper than all plans before it
+        void improved(ArrayList<Action> plan, int cost, int lowerBound, long expandedStates);
+    }
+
+    private double weight;
+    private double bound;
+    private Heuristic heuristic;
+    private SolutionListener listener;
+
+    private OpenList<Node> openList;
+    private HashMap<State, Node> nodes;
+    // fCount[f]: number of queued nodes with g + h == f; no queued node has an f below minF
+    private int[] fCount;
+    private int minF;
+    private Node incumbent;
+    private int incumbentCost;
+    private int lowerBound;
+
+    public AnytimeSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public AnytimeSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        weight = options.getDouble("weight", 2);
+        bound = options.getDouble("bound", 1);
+        if (weight < 1 || bound < 1) {
+            Errors.usageError("--weight and --bound must be at least 1");
+        }
+        heuristic = createHeuristic(true);
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        heuristic = createHeuristic(true);
+    }
+
+    public void setSolutionListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+    // lower bound on the optimal cost proven by the last run
+    public int lowerBound() {
+        return lowerBound;
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        openList = createOpenList();
+        nodes = new HashMap<State, Node>();
+        fCount = new int[64];
+        minF = 0;
+        incumbent = null;
+        incumbentCost = Integer.MAX_VALUE;
+        lowerBound = 0;
+        try {
+            search();
+        } catch (SearchLimitExceededException | OutOfMemoryError e) {
+            if (incumbent == null) {
+                throw e;
+            }
+        }
+        // the best plan only needs the nodes on its path
+        openList = null;
+        nodes = null;
+        fCount = null;
+        if (incumbent == null) {
+            return unsolvable();
+        }
+        return extractPath(incumbent);
+    }
+
+    @Override
+    protected boolean planIsOptimal() {
+        return lowerBound == incumbentCost;
+    }
+
+    @Override
+    protected void releaseMemory() {
+        openList = null;
+        nodes = null;
+        fCount = null;
+        incumbent = null;
+    }
+
+    private void search() {
+        insert(new Node(stateSpace.init(), null, null, 0));
+        while (!openList.isEmpty()) {
+            if (incumbent != null && incumbentCost <= bound * updateLowerBound()) {
+                return;
+            }
+            Node n = openList.remove();
+            if (!n.queued) {
+                // stale entry, the state was reached more cheaply
+                prunedStates++;
+                continue;
+            }
+            n.queued = false;
+            fCount[n.f]--;
+            if (n.f >= incumbentCost) {
+                prunedStates++;
+                continue;
+            }
+            expandedStates++;
+            stateSpace.forEachSuccessor(n.state, (action, succ) -> {
+                generatedStates++;
+                insert(new Node(succ, n, action, n.g + stateSpace.cost(action)));
+            });
+            peakOpenListSize = Math.max(peakOpenListSize, openList.size());
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                checkpoint(openList.size(), nodes.size(), updateLowerBound());
+            }
+        }
+        // nothing is left that could lead to a cheaper plan
+        lowerBound = incumbentCost;
+    }
+
+    private void insert(Node n) {
+        int h = heuristic.estimate(n.state);
+        n.f = n.g + h;
+        if (n.f >= incumbentCost) {
+            prunedStates++;
+            return;
+        }
+        State key = symmetry == null ? n.state : symmetry.canonical(n.state);
+        Node old = nodes.get(key);
+        if (old != null && old.g <= n.g) {
+            prunedStates++;
+            return;
+        }
+        if (old != null) {
+            reopenedStates++;
+            if (old.queued) {
+                old.queued = false;
+                fCount[old.f]--;
+            }
+        }
+        nodes.put(key, n);
+        if (stateSpace.isGoal(n.state)) {
+            // continuing from a goal never leads to a cheaper plan
+            improve(n);
+            return;
+        }
+        n.queued = true;
+        if (n.f >= fCount.length) {
+            fCount = Arrays.copyOf(fCount, Math.max(2 * fCount.length, n.f + 1));
+        }
+        fCount[n.f]++;
+        minF = Math.min(minF, n.f);
+        openList.add(n, n.g + (int) (weight * h));
+    }
+
+    private void improve(Node goal) {
+        incumbent = goal;
+        incumbentCost = goal.g;
+        updateLowerBound();
+        if (listener != null) {
+            listener.improved(extractPath(goal), incumbentCost, lowerBound, expandedStates);
+        }
+    }
+
+    private int updateLowerBound() {
+        while (minF < fCount.length && fCount[minF] == 0) {
+            minF++;
+        }
+        lowerBound = minF < fCount.length ? Math.min(minF, incumbentCost) : incumbentCost;
+        return lowerBound;
+    }
+
+    private static ArrayList<Action> extractPath(Node goal) {
+        ArrayList<Action> path = new ArrayList<Action>();
+        for (Node n = goal; n.parent != null; n = n.parent) {
+            path.add(n.action);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static class Node {
+        final State state;
+        final Node parent;
+        final Action action;
+        final int g;
+        int f;
+        // in the open list and not superseded by a cheaper node of the same state
+        boolean queued;
+
+        Node(State state, Node parent, Action action, int g) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.g = g;
+        }
+    }
+
+    public static void main(String args[]){
+        try {
+            AnytimeSearch search = new AnytimeSearch(args);
+            long start = System.nanoTime();
+            search.setSolutionListener((plan, cost, lowerBound, expanded) ->
+                System.out.println(String.format(Locale.ROOT,
+                                                 "plan of cost %d after %.3f seconds and %d expansions, lower bound %d",
+                                                 cost, (System.nanoTime() - start) / 1000000000.0, expanded, lowerBound)));
+            search.runSearchAlgorithm();
+            System.out.println("Lower bound: " + search.lowerBound());
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
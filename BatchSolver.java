@@ -0,0 +1,215 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/*
+  Solves many instance files in one JVM, so start-up and JIT warm-up are
+  paid once. Directories are expanded to the files they contain, in name
+  order; an ElevatorsInstanceArchive stands for all instances in it,
+  which are named <archive>:<name>. Instances are solved by a pool of
+  --jobs workers (default: number of cores); results are written in
+  input order, one row per instance.
+
+  usage: BatchSolver [--engine=astar] [--jobs=N] [--format=csv|json]
+                     [--output=<file>] [engine options] <file or directory>...
+
+  --engine selects ucs, astar (default), anytime, bidirectional, external,
+  parallel or ida (IterativeDeepeningSearch). All other options are
+  passed to the engine, in particular the budgets
+  --node-limit=<expansions>, --time-limit=<seconds> and
+  --memory-limit=<MB>, which every engine checks while it expands states.
+  The memory limit is measured on the shared heap, so with several jobs
+  it limits their sum. An instance that exhausts a budget or runs out of
+  memory is reported as such and the batch goes on.
+
+  With --plan-cache=<file> all jobs share one PlanCache, which is loaded
+  before the first instance and saved after the last one.
+
+  Each row holds the instance, the status (solved, unsolvable,
+  budget-exhausted or error), the plan cost and length, the number of
+  expanded and generated states and the CPU and wall-clock seconds.
+  Nothing else is written to standard output: instances are turned into
+  state spaces with ElevatorsStateSpace.create, which prints nothing,
+  rather than buildFromCmdline, whose progress messages would end up in
+  the results.
+*/
+public class BatchSolver {
+    public static void main(String args[]) {
+        try {
+            solveAll(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void solveAll(String args[]) {
+        ArrayList<String> params = new ArrayList<String>(Arrays.asList(args));
+        SearchOptions options = SearchOptions.extract(params);
+        if (params.isEmpty()) {
+            Errors.usageError("usage: BatchSolver [--engine=astar] [--jobs=N] [--format=csv|json]"
+                              + " [--output=<file>] [engine options] <file or directory>...");
+        }
+        String engine = options.get("engine", "astar");
+        int jobs = options.getInt("jobs", Runtime.getRuntime().availableProcessors());
+        if (jobs < 1) {
+            Errors.usageError("--jobs must be positive");
+        }
+        boolean json = options.get("format", "csv").equals("json");
+        if (!json && !options.get("format", "csv").equals("csv")) {
+            Errors.usageError("unknown output format: " + options.get("format", null));
+        }
+        PrintStream out = System.out;
+        if (options.has("output")) {
+            try {
+                out = new PrintStream(new FileOutputStream(options.get("output", null)), true);
+            } catch (FileNotFoundException e) {
+                Errors.usageError("cannot write results to " + options.get("output", null));
+            }
+        }
+
+        ArrayList<String> files = new ArrayList<String>();
+        for (String name : params) {
+            addInstances(new File(name), files);
+        }
+        ArrayList<Instance> instances = new ArrayList<Instance>();
+        for (String file : files) {
+            if (ElevatorsInstanceArchive.isArchive(new File(file))) {
+                ElevatorsInstanceArchive archive = ElevatorsInstanceArchive.open(new File(file));
+                for (int i = 0; i < archive.size(); i++) {
+                    instances.add(new Instance(file + ":" + archive.name(i), archive, i));
+                }
+            } else {
+                instances.add(new Instance(file, null, 0));
+            }
+        }
+
+        // opened before the jobs start, so that a broken cache file ends the batch
+        PlanCache cache = PlanCache.fromOptions(options);
+
+        // the engines ignore the batch options; every worker reuses its engine for all its instances
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(engine, options));
+        ArrayList<Future<Result>> results = new ArrayList<Future<Result>>();
+        for (Instance instance : instances) {
+            results.add(pool.submit(() -> solve(solvers.get(), instance)));
+        }
+        pool.shutdown();
+
+        if (!json) {
+            out.println("instance,status,cost,length,expanded,generated,cpu_seconds,wall_seconds");
+        }
+        for (int i = 0; i < instances.size(); i++) {
+            Result result;
+            try {
+                result = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                result = new Result(instances.get(i).name);
+                result.status = "error";
+            }
+            out.println(json ? result.toJson() : result.toCsv());
+        }
+        if (out != System.out) {
+            out.close();
+        }
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    // also used by ElevatorsInstanceArchive
+    static void addInstances(File file, ArrayList<String> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isFile()) {
+                    files.add(child.getPath());
+                }
+            }
+        } else {
+            files.add(file.getPath());
+        }
+    }
+
+    private static Result solve(Solver solver, Instance instance) {
+        Result result = new Result(instance.name);
+        SearchResult outcome;
+        try {
+            outcome = solver.solve(ElevatorsStateSpace.create(instance.load()));
+        } catch (SearchError e) {
+            result.status = "error";
+            return result;
+        }
+        if (outcome.status == SearchResult.Status.SOLVED) {
+            result.status = "solved";
+            result.cost = outcome.cost;
+            result.length = outcome.plan.size();
+        } else if (outcome.status == SearchResult.Status.UNSOLVABLE) {
+            result.status = "unsolvable";
+        } else {
+            result.status = "budget-exhausted";
+        }
+        result.expanded = outcome.expandedStates;
+        result.generated = outcome.generatedStates;
+        result.cpuSeconds = outcome.cpuSeconds;
+        result.wallSeconds = outcome.wallSeconds;
+        return result;
+    }
+
+    private static class Instance {
+        final String name;
+        // null for instance files
+        final ElevatorsInstanceArchive archive;
+        final int index;
+
+        Instance(String name, ElevatorsInstanceArchive archive, int index) {
+            this.name = name;
+            this.archive = archive;
+            this.index = index;
+        }
+
+        ElevatorsInstance load() {
+            return archive == null ? ElevatorsInstance.readFile(name) : archive.get(index);
+        }
+    }
+
+    private static class Result {
+        final String instance;
+        String status;
+        int cost = -1;
+        int length = -1;
+        long expanded;
+        long generated;
+        double cpuSeconds;
+        double wallSeconds;
+
+        Result(String instance) {
+            this.instance = instance;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.3f,%.3f", instance, status, cost, length,
+                                 expanded, generated, cpuSeconds, wallSeconds);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                                 "{\"instance\":\"%s\",\"status\":\"%s\",\"cost\":%d,\"length\":%d,\"expanded\":%d,"
+                                 + "\"generated\":%d,\"cpuSeconds\":%.3f,\"wallSeconds\":%.3f}",
+                                 instance.replace("\\", "\\\\").replace("\"", "\\\""), status, cost, length,
+                                 expanded, generated, cpuSeconds, wallSeconds);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/*
+  Bidirectional uniform-cost search. The forward search starts from the
+  initial state, the backward search from all goal states at once (the
+  state space must be a PredecessorStateSpace). In each step the side with
+  the smaller open list is expanded.
+
+  Every generated state is looked up in the other side's index; mu is the
+  cheapest forward + backward cost seen at such a meeting point. The search
+  stops when the smallest g values of the two open lists add up to at
+  least mu: no path through an unexpanded state can be cheaper any more,
+  so mu is optimal. --open selects the open list of both sides.
+*/
+public class BidirectionalSearch extends SearchAlgorithmBase {
+
+    private PredecessorStateSpace predecessorSpace;
+    private Side forward;
+    private Side backward;
+    private int mu;
+    private Node meetForward;
+    private Node meetBackward;
+
+    public BidirectionalSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public BidirectionalSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        if (symmetry != null) {
+            // meeting states must be identical, not just symmetric
+            Errors.usageError("--symmetry is not supported by BidirectionalSearch");
+        }
+        predecessorSpace = predecessorSpace();
+    }
+
+    private PredecessorStateSpace predecessorSpace() {
+        if (!(stateSpace instanceof PredecessorStateSpace)) {
+            Errors.usageError("state space cannot be searched backwards");
+        }
+        return (PredecessorStateSpace) stateSpace;
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        predecessorSpace = predecessorSpace();
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        mu = Integer.MAX_VALUE;
+        meetForward = null;
+        meetBackward = null;
+        forward = new Side(true);
+        backward = new Side(false);
+        for (State goal : predecessorSpace.goalStates()) {
+            backward.insert(new Node(goal, null, null, 0), forward);
+        }
+        forward.insert(new Node(stateSpace.init(), null, null, 0), backward);
+
+        while (!forward.openList.isEmpty() && !backward.openList.isEmpty()) {
+            long topSum = (long) forward.openList.minPriority() + backward.openList.minPriority();
+            if (topSum >= mu) {
+                break;
+            }
+            if (forward.openList.size() <= backward.openList.size()) {
+                forward.expand(backward);
+            } else {
+                backward.expand(forward);
+            }
+            peakOpenListSize = Math.max(peakOpenListSize, forward.openList.size() + backward.openList.size());
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                // best covers open and closed states; the layer is the sum of both smallest g values
+                checkpoint(forward.openList.size() + backward.openList.size(),
+                           forward.best.size() + backward.best.size(), (int) topSum);
+            }
+        }
+
+        if (meetForward == null) {
+            return unsolvable();
+        }
+        return extractPath();
+    }
+
+    @Override
+    protected void releaseMemory() {
+        forward = null;
+        backward = null;
+        meetForward = null;
+        meetBackward = null;
+    }
+
+    /*
+      Forward actions up to the meeting state, then the actions stored in
+      the backward nodes: a backward node was generated by a predecessor
+      step, so its action leads from its own state to its parent's state.
+    */
+    private ArrayList<Action> extractPath() {
+        ArrayList<Action> path = new ArrayList<Action>();
+        for (Node n = meetForward; n.parent != null; n = n.parent) {
+            path.add(n.action);
+        }
+        Collections.reverse(path);
+        for (Node n = meetBackward; n.parent != null; n = n.parent) {
+            path.add(n.action);
+        }
+        return path;
+    }
+
+    private static class Node {
+        final State state;
+        final Node parent;
+        final Action action;
+        final int g;
+
+        Node(State state, Node parent, Action action, int g) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.g = g;
+        }
+    }
+
+    private class Side {
+        final boolean isForward;
+        final OpenList<Node> openList = createOpenList();
+        // cheapest node found so far for every state reached by this side
+        final HashMap<State, Node> best = new HashMap<State, Node>();
+
+        Side(boolean isForward) {
+            this.isForward = isForward;
+        }
+
+        void expand(Side other) {
+            Node n = openList.remove();
+            if (best.get(n.state) != n) {
+                // stale entry, the state was reached more cheaply
+                prunedStates++;
+                return;
+            }
+            expandedStates++;
+            ArrayList<ActionStatePair> neighbours = isForward ? stateSpace.succ(n.state)
+                                                              : predecessorSpace.pred(n.state);
+            for (ActionStatePair pair : neighbours) {
+                generatedStates++;
+                insert(new Node(pair.state, n, pair.action, n.g + pair.action.cost()), other);
+            }
+        }
+
+        void insert(Node n, Side other) {
+            Node old = best.get(n.state);
+            if (old != null && old.g <= n.g) {
+                prunedStates++;
+                return;
+            }
+            if (old != null) {
+                reopenedStates++;
+            }
+            best.put(n.state, n);
+            openList.add(n, n.g);
+
+            Node match = other.best.get(n.state);
+            if (match != null && n.g + match.g < mu) {
+                mu = n.g + match.g;
+                meetForward = isForward ? n : match;
+                meetBackward = isForward ? match : n;
+            }
+        }
+    }
+
+    public static void main(String args[]){
+        try {
+            BidirectionalSearch search = new BidirectionalSearch(args);
+            search.runSearchAlgorithm();
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
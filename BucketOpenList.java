@@ -0,0 +1,62 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+
+/*
+  Dial's bucket queue: one bucket per integer priority. Adding is O(1);
+  removing scans forward from the smallest non-empty bucket, which is
+  amortized O(1) as long as priorities grow monotonically, as they do in
+  uniform-cost search with non-negative action costs. Adding an element
+  below the current minimum is still handled correctly.
+
+  Buckets are LIFO, so ties are broken in favour of the most recently
+  generated node. Priorities must be non-negative.
+*/
+public class BucketOpenList<E> implements OpenList<E> {
+    private ArrayList<ArrayDeque<E>> buckets = new ArrayList<ArrayDeque<E>>();
+    private int minPriority;
+    private int size;
+
+    public void add(E element, int priority) {
+        while (buckets.size() <= priority) {
+            buckets.add(new ArrayDeque<E>());
+        }
+        buckets.get(priority).push(element);
+        if (size == 0 || priority < minPriority) {
+            minPriority = priority;
+        }
+        size++;
+    }
+
+    public E remove() {
+        ArrayDeque<E> bucket = buckets.get(minPriority);
+        while (bucket.isEmpty()) {
+            bucket = buckets.get(++minPriority);
+        }
+        size--;
+        return bucket.pop();
+    }
+
+    public int minPriority() {
+        while (buckets.get(minPriority).isEmpty()) {
+            minPriority++;
+        }
+        return minPriority;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (ArrayDeque<E> bucket : buckets) {
+            bucket.clear();
+        }
+        minPriority = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,20 @@
+/*
+  Optional extension of StateSpace for state spaces whose plans can be
+  kept in a PlanCache, also across processes.
+
+  fingerprint identifies the instance as it is now, apart from its
+  initial state: state spaces with the same fingerprint have the same
+  states, successors, action costs and goals. It is computed from the
+  instance data alone, so it is the same in every process and for every
+  copy of the instance, whichever file it came from. encode turns a state
+  into words that mean the same to every state space with that
+  fingerprint.
+*/
+public interface CacheableStateSpace extends StateSpace {
+    public long fingerprint();
+    public long[] encode(State s);
+    // small non-negative code that identifies an action of this instance
+    public int actionCode(Action a);
+    // the action with this code, null if there is none
+    public Action action(int code);
+}
@@ -0,0 +1,176 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Supplier;
+
+
+/*
+  Measures closed-list throughput (add + contains) and memory per state on
+  states of a real instance. Compares
+   - a HashSet hashing state.toString() (the legacy scheme),
+   - HashVisitedSet, using the structural hash of the state,
+   - PackedVisitedSet, if the state space supports packed IDs.
+
+  usage: ClosedListBenchmark elevators <instance file> [number of states]
+*/
+public class ClosedListBenchmark {
+    static final int DEFAULT_NUMBER_OF_STATES = 200000;
+    static final int WARMUP_ROUNDS = 3;
+    static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String args[]) {
+        try {
+            runBenchmark(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void runBenchmark(String args[]) {
+        if (args.length < 2) {
+            Errors.usageError("usage: ClosedListBenchmark elevators <instance file> [number of states]");
+        }
+        int numberOfStates = DEFAULT_NUMBER_OF_STATES;
+        if (args.length > 2) {
+            numberOfStates = Integer.parseInt(args[2]);
+        }
+        StateSpace stateSpace = createStateSpace(Arrays.copyOf(args, 2));
+        ArrayList<State> states = collectStates(stateSpace, numberOfStates);
+        System.out.println("Collected " + states.size() + " distinct states");
+
+        measure("toString() hash", states, () -> new ToStringVisitedSet());
+        measure("structural hash", states, () -> new HashVisitedSet());
+        if (stateSpace instanceof PackedStateSpace && ((PackedStateSpace) stateSpace).fitsInLong()) {
+            PackedStateSpace packed = (PackedStateSpace) stateSpace;
+            measure("packed ids", states, () -> new PackedVisitedSet(packed));
+        }
+        System.out.println("(memory excludes the State objects, which the hash based sets"
+                           + " keep alive and the packed set does not)");
+    }
+
+    /*
+      Breadth-first enumeration of up to limit distinct states from the
+      initial state, so the sample has a realistic mix of states.
+    */
+    static ArrayList<State> collectStates(StateSpace stateSpace, int limit) {
+        ArrayList<State> states = new ArrayList<State>();
+        HashSet<State> seen = new HashSet<State>();
+        ArrayDeque<State> queue = new ArrayDeque<State>();
+        queue.add(stateSpace.init());
+        seen.add(stateSpace.init());
+        while (!queue.isEmpty() && states.size() < limit) {
+            State s = queue.remove();
+            states.add(s);
+            for (ActionStatePair pair : stateSpace.succ(s)) {
+                if (seen.add(pair.state)) {
+                    queue.add(pair.state);
+                }
+            }
+        }
+        return states;
+    }
+
+    private static void measure(String name, ArrayList<State> states, Supplier<VisitedSet> factory) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(states, factory.get());
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            total += round(states, factory.get());
+        }
+        // every round performs one add and one contains per state
+        double operations = 2.0 * states.size() * MEASURED_ROUNDS;
+
+        long before = usedMemory();
+        VisitedSet retained = factory.get();
+        for (State s : states) {
+            retained.add(s);
+        }
+        long bytesPerState = (usedMemory() - before) / retained.size();
+
+        System.out.println(name + ": " + String.format("%.1f", total / operations) + " ns/op, "
+                           + String.format("%.0f", operations / (total / 1000000000.0)) + " ops/s, "
+                           + bytesPerState + " bytes/state");
+    }
+
+    private static long round(ArrayList<State> states, VisitedSet closedList) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (State s : states) {
+            closedList.add(s);
+        }
+        for (State s : states) {
+            if (closedList.contains(s)) {
+                hits++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (hits != states.size()) {
+            throw new IllegalStateException("closed list lost states");
+        }
+        return time;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class ToStringVisitedSet implements VisitedSet {
+        private HashSet<ToStringKey> keys = new HashSet<ToStringKey>();
+
+        public boolean add(State s) {
+            return keys.add(new ToStringKey(s));
+        }
+
+        public boolean contains(State s) {
+            return keys.contains(new ToStringKey(s));
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        public void clear() {
+            keys.clear();
+        }
+    }
+
+    private static class ToStringKey {
+        final State state;
+
+        ToStringKey(State state) {
+            this.state = state;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof ToStringKey) && state.equals(((ToStringKey) o).state);
+        }
+
+        @Override
+        public int hashCode() {
+            return state.toString().hashCode();
+        }
+    }
+
+    private static StateSpace createStateSpace(String args[]) {
+        if (args.length == 0) {
+            Errors.usageError("no state space given");
+        }
+
+        ArrayList<String> params = new ArrayList<String>(Arrays.asList(args));
+        params.remove(0);
+
+        if (args[0].equals("elevators")) {
+            return ElevatorsStateSpace.buildFromCmdline(params);
+        } else {
+            Errors.usageError("unknown state space: " + args[0]);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+/*
+  Optional extension of StateSpace for state spaces whose goal is a list
+  of requests, one per object (a passenger in the elevators domain), that
+  can change between searches. A request is the value the object must
+  end up with, or NO_GOAL if the object may end up anywhere.
+*/
+public interface DynamicGoalStateSpace extends StateSpace {
+    public static final int NO_GOAL = -1;
+
+    public int numberOfRequests();
+    public int getGoal(int object);
+    public void setGoal(int object, int goal);
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+
+/*
+  The numbers that make up an elevators instance. In text form (instance
+  files and streams) they are
+
+    <passengers> <elevators> <floors>
+    <initial floor of every passenger>
+    <initial floor of every elevator>
+    <goal floor of every passenger>
+
+  separated by any whitespace. ElevatorsInstanceArchive stores the same
+  numbers in binary form. ElevatorsStateSpace.create builds the state
+  space of an instance.
+*/
+public class ElevatorsInstance {
+    public final int numberOfFloors;
+    public final int[] passengerFloors;
+    public final int[] elevatorFloors;
+    public final int[] goalFloors;
+
+    public ElevatorsInstance(int numberOfFloors, int[] passengerFloors, int[] elevatorFloors, int[] goalFloors) {
+        if (numberOfFloors < 0) {
+            Errors.inputError("invalid number of floors");
+        }
+        if (goalFloors.length != passengerFloors.length) {
+            Errors.inputError("need one goal floor per passenger");
+        }
+        checkFloors(passengerFloors, numberOfFloors, "invalid passenger floor");
+        checkFloors(elevatorFloors, numberOfFloors, "invalid elevator floor");
+        checkFloors(goalFloors, numberOfFloors, "invalid goal floor");
+        this.numberOfFloors = numberOfFloors;
+        this.passengerFloors = passengerFloors;
+        this.elevatorFloors = elevatorFloors;
+        this.goalFloors = goalFloors;
+    }
+
+    private static void checkFloors(int[] floors, int numberOfFloors, String msg) {
+        for (int floor : floors) {
+            if (floor < 0 || floor >= numberOfFloors) {
+                Errors.inputError(msg);
+            }
+        }
+    }
+
+    public int numberOfPassengers() {
+        return passengerFloors.length;
+    }
+
+    public int numberOfElevators() {
+        return elevatorFloors.length;
+    }
+
+    // reads one instance in text form; the input may go on after it
+    public static ElevatorsInstance read(IntReader in) {
+        int numPassengers = in.nextInt();
+        if (numPassengers < 0) {
+            Errors.inputError("line " + in.line() + ": invalid number of passengers");
+        }
+        int numElevators = in.nextInt();
+        if (numElevators < 0) {
+            Errors.inputError("line " + in.line() + ": invalid number of elevators");
+        }
+        int numFloors = in.nextInt();
+        int[] passengers = readInts(in, numPassengers);
+        int[] elevators = readInts(in, numElevators);
+        int[] goals = readInts(in, numPassengers);
+        return new ElevatorsInstance(numFloors, passengers, elevators, goals);
+    }
+
+    // reads a file holding exactly one instance in text form
+    public static ElevatorsInstance readFile(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+            IntReader in = new IntReader(channel);
+            ElevatorsInstance instance = read(in);
+            if (in.hasNext()) {
+                Errors.inputError("line " + in.line() + ": expected end of file");
+            }
+            return instance;
+        } catch (NoSuchFileException e) {
+            Errors.fileError("input file not found: " + filename);
+        } catch (IOException e) {
+            Errors.fileError(e.getMessage());
+        }
+        return null;
+    }
+
+    /*
+      The array grows with the numbers actually read, so a corrupt count
+      ends with an error about the missing input, not with a huge
+      allocation.
+    */
+    private static int[] readInts(IntReader in, int count) {
+        int[] result = new int[Math.min(count, 1024)];
+        for (int i = 0; i < count; i++) {
+            if (i == result.length) {
+                result = Arrays.copyOf(result, (int) Math.min(count, 2L * i));
+            }
+            result[i] = in.nextInt();
+        }
+        return result;
+    }
+}
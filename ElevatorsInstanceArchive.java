@@ -0,0 +1,218 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/*
+  Many elevators instances in one memory-mapped file, so a batch does not
+  open and parse one file per instance. Layout (big-endian):
+
+    int MAGIC, int count, long offset[count]
+    per instance, at its offset:
+      int name length, name (UTF-8)
+      int passengers, int elevators, int floors
+      short initial passenger floors, short initial elevator floors,
+      short goal floors
+
+  The offsets allow random access to any instance. Floors are stored as
+  shorts, so instances need fewer than 32768 floors, and a file is limited
+  to 2 GB (the size of one mapping). get() only uses absolute reads of the
+  mapping, so one archive can be shared by several threads.
+
+  usage: ElevatorsInstanceArchive pack <archive> <file or directory>...
+         ElevatorsInstanceArchive list <archive>
+*/
+public class ElevatorsInstanceArchive {
+    private static final int MAGIC = 0x454c5631;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private ElevatorsInstanceArchive(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+        if (count < 0 || 8L + 8L * count > buffer.capacity()) {
+            Errors.inputError("corrupt instance archive");
+        }
+    }
+
+    public static boolean isArchive(File file) {
+        if (!file.isFile() || file.length() < 8) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static ElevatorsInstanceArchive open(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                Errors.inputError("instance archive larger than 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < 8 || buffer.getInt(0) != MAGIC) {
+                Errors.inputError("not an instance archive: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return new ElevatorsInstanceArchive(buffer);
+        } catch (NoSuchFileException e) {
+            Errors.fileError("input file not found: " + file);
+        } catch (IOException e) {
+            Errors.fileError(e.getMessage());
+        }
+        return null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String name(int i) {
+        int position = offset(i);
+        byte[] name = new byte[nameLength(position)];
+        for (int j = 0; j < name.length; j++) {
+            name[j] = buffer.get(position + 4 + j);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    public ElevatorsInstance get(int i) {
+        int position = offset(i);
+        position += 4 + nameLength(position);
+        int numPassengers = buffer.getInt(position);
+        int numElevators = buffer.getInt(position + 4);
+        int numFloors = buffer.getInt(position + 8);
+        position += 12;
+        if (numPassengers < 0 || numElevators < 0
+            || position + 2L * (2 * numPassengers + numElevators) > buffer.capacity()) {
+            Errors.inputError("corrupt instance archive");
+        }
+        int[] passengers = new int[numPassengers];
+        int[] elevators = new int[numElevators];
+        int[] goals = new int[numPassengers];
+        for (int j = 0; j < numPassengers; j++, position += 2) {
+            passengers[j] = buffer.getShort(position);
+        }
+        for (int j = 0; j < numElevators; j++, position += 2) {
+            elevators[j] = buffer.getShort(position);
+        }
+        for (int j = 0; j < numPassengers; j++, position += 2) {
+            goals[j] = buffer.getShort(position);
+        }
+        return new ElevatorsInstance(numFloors, passengers, elevators, goals);
+    }
+
+    // length of the name stored at position, checked against the file size
+    private int nameLength(int position) {
+        int length = buffer.getInt(position);
+        if (length < 0 || position + 4L + length > buffer.capacity()) {
+            Errors.inputError("corrupt instance archive");
+        }
+        return length;
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("no instance " + i + " in archive");
+        }
+        long offset = buffer.getLong(8 + 8 * i);
+        if (offset < 8L + 8L * count || offset > buffer.capacity() - 4) {
+            Errors.inputError("corrupt instance archive");
+        }
+        return (int) offset;
+    }
+
+    public static void write(File file, ArrayList<String> names, ArrayList<ElevatorsInstance> instances)
+        throws IOException {
+        long[] offsets = new long[instances.size()];
+        long offset = 8L + 8L * instances.size();
+        byte[][] encodedNames = new byte[names.size()][];
+        for (int i = 0; i < instances.size(); i++) {
+            ElevatorsInstance instance = instances.get(i);
+            if (instance.numberOfFloors > Short.MAX_VALUE) {
+                Errors.inputError("too many floors for an instance archive: " + names.get(i));
+            }
+            encodedNames[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i] = offset;
+            offset += 16 + encodedNames[i].length
+                + 2L * (2 * instance.numberOfPassengers() + instance.numberOfElevators());
+        }
+        if (offset > Integer.MAX_VALUE) {
+            Errors.inputError("instance archive would be larger than 2 GB");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(instances.size());
+            for (long o : offsets) {
+                out.writeLong(o);
+            }
+            for (int i = 0; i < instances.size(); i++) {
+                ElevatorsInstance instance = instances.get(i);
+                out.writeInt(encodedNames[i].length);
+                out.write(encodedNames[i]);
+                out.writeInt(instance.numberOfPassengers());
+                out.writeInt(instance.numberOfElevators());
+                out.writeInt(instance.numberOfFloors);
+                for (int floor : instance.passengerFloors) {
+                    out.writeShort(floor);
+                }
+                for (int floor : instance.elevatorFloors) {
+                    out.writeShort(floor);
+                }
+                for (int floor : instance.goalFloors) {
+                    out.writeShort(floor);
+                }
+            }
+        }
+    }
+
+    public static void main(String args[]) {
+        try {
+            run(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void run(String args[]) {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            ArrayList<String> files = new ArrayList<String>();
+            for (String name : Arrays.copyOfRange(args, 2, args.length)) {
+                BatchSolver.addInstances(new File(name), files);
+            }
+            ArrayList<ElevatorsInstance> instances = new ArrayList<ElevatorsInstance>();
+            for (String name : files) {
+                instances.add(ElevatorsInstance.readFile(name));
+            }
+            try {
+                write(new File(args[1]), files, instances);
+            } catch (IOException e) {
+                Errors.fileError(e.getMessage());
+            }
+            System.out.println("packed " + instances.size() + " instances into " + args[1]);
+        } else if (args.length == 2 && args[0].equals("list")) {
+            ElevatorsInstanceArchive archive = open(new File(args[1]));
+            for (int i = 0; i < archive.size(); i++) {
+                ElevatorsInstance instance = archive.get(i);
+                System.out.println(archive.name(i) + ": " + instance.numberOfPassengers() + " passengers, "
+                                   + instance.numberOfElevators() + " elevators, "
+                                   + instance.numberOfFloors + " floors");
+            }
+        } else {
+            Errors.usageError("usage: ElevatorsInstanceArchive pack <archive> <file or directory>...\n"
+                              + "       ElevatorsInstanceArchive list <archive>");
+        }
+    }
+}
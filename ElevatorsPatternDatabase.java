@@ -0,0 +1,251 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+
+/*
+  Pattern database for the elevators domain: the exact cost to the goal
+  in an abstraction that keeps all elevators but only a subset of the
+  passengers (the pattern). Every action of the real state space is an
+  action of the abstraction or has no effect on it, so the abstract cost
+  is an admissible and consistent heuristic.
+
+  The table is filled by a uniform-cost sweep from all abstract goal
+  states. Every action can be undone by an action of the same cost (up
+  and down, embark and disembark), so the sweep can follow forward
+  actions and still compute costs to the goal.
+
+  An abstract state is an index in mixed radix: numberOfFloors digits per
+  elevator, numberOfFloors + numberOfElevators digits per pattern
+  passenger, with the same value encoding as ElevatorsStateSpace. Costs
+  are stored as shorts. A table only depends on the building (floors,
+  elevators, move costs) and the goal floors of the pattern, so it can be
+  saved and memory-mapped by later runs on the same building.
+*/
+public class ElevatorsPatternDatabase {
+    private static final int MAGIC = 0x50444231;
+
+    private final int numberOfFloors;
+    private final int numberOfElevators;
+    private final int[] goals;
+    private final int[] moveCosts;
+    private final int[] elevatorStrides;
+    private final int[] passengerStrides;
+    private final int size;
+    private ShortBuffer costs;
+
+    /*
+      goals: goal floor of every pattern passenger; moveCosts: cost of one
+      move of every elevator.
+    */
+    public ElevatorsPatternDatabase(int numberOfFloors, int numberOfElevators, int[] goals, int[] moveCosts) {
+        this.numberOfFloors = numberOfFloors;
+        this.numberOfElevators = numberOfElevators;
+        this.goals = goals.clone();
+        this.moveCosts = moveCosts.clone();
+        this.elevatorStrides = new int[numberOfElevators];
+        this.passengerStrides = new int[goals.length];
+        long stride = 1;
+        for (int e = 0; e < numberOfElevators; e++) {
+            elevatorStrides[e] = (int) stride;
+            stride *= numberOfFloors;
+        }
+        for (int i = 0; i < goals.length; i++) {
+            passengerStrides[i] = (int) stride;
+            stride *= numberOfFloors + numberOfElevators;
+        }
+        if (stride > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("pattern database too large");
+        }
+        this.size = (int) stride;
+    }
+
+    // number of entries of a table with the given number of pattern passengers
+    public static long size(int numberOfFloors, int numberOfElevators, int numberOfPassengers) {
+        long size = 1;
+        for (int e = 0; e < numberOfElevators; e++) {
+            size *= numberOfFloors;
+        }
+        for (int i = 0; i < numberOfPassengers; i++) {
+            size *= numberOfFloors + numberOfElevators;
+        }
+        return size;
+    }
+
+    public int elevatorStride(int elevator) {
+        return elevatorStrides[elevator];
+    }
+
+    public int passengerStride(int passenger) {
+        return passengerStrides[passenger];
+    }
+
+    public int cost(int index) {
+        return costs.get(index);
+    }
+
+    /*
+      Maps the table from directory if a matching file is there; otherwise
+      computes it and, if directory is not null, saves it there for later
+      runs. The file is written under a temporary name and renamed, so
+      concurrent runs never see a partial table.
+    */
+    public void load(File directory) throws IOException {
+        if (directory != null) {
+            File file = new File(directory, fileName());
+            if (file.isFile() && map(file)) {
+                return;
+            }
+            short[] table = compute();
+            File temporary = File.createTempFile(fileName(), ".tmp", directory);
+            write(temporary, table);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            costs = ShortBuffer.wrap(table);
+        } else {
+            costs = ShortBuffer.wrap(compute());
+        }
+    }
+
+    private String fileName() {
+        StringBuilder name = new StringBuilder("elevators-pdb-f" + numberOfFloors + "-e" + numberOfElevators + "-g");
+        for (int i = 0; i < goals.length; i++) {
+            if (i > 0) {
+                name.append('.');
+            }
+            name.append(goals[i]);
+        }
+        return name.append(".bin").toString();
+    }
+
+    private int headerInts() {
+        return 5 + goals.length + numberOfElevators;
+    }
+
+    private void write(File file, short[] table) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(numberOfFloors);
+            out.writeInt(numberOfElevators);
+            out.writeInt(goals.length);
+            for (int goal : goals) {
+                out.writeInt(goal);
+            }
+            for (int cost : moveCosts) {
+                out.writeInt(cost);
+            }
+            out.writeInt(size);
+            for (short cost : table) {
+                out.writeShort(cost);
+            }
+        }
+    }
+
+    // returns false if the file does not hold the table of this pattern
+    private boolean map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long headerBytes = 4L * headerInts();
+            if (channel.size() != headerBytes + 2L * size) {
+                return false;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            boolean matches = buffer.getInt() == MAGIC && buffer.getInt() == numberOfFloors
+                && buffer.getInt() == numberOfElevators && buffer.getInt() == goals.length;
+            for (int i = 0; matches && i < goals.length; i++) {
+                matches = buffer.getInt() == goals[i];
+            }
+            for (int e = 0; matches && e < numberOfElevators; e++) {
+                matches = buffer.getInt() == moveCosts[e];
+            }
+            if (!matches || buffer.getInt() != size) {
+                return false;
+            }
+            // the mapping stays valid after the channel is closed
+            costs = ((ByteBuffer) buffer.position((int) headerBytes)).slice().asShortBuffer();
+            return true;
+        }
+    }
+
+    private short[] compute() {
+        short[] table = new short[size];
+        Arrays.fill(table, (short) -1);
+        long[] closed = new long[(size + 63) / 64];
+        IntBucketOpenList openList = new IntBucketOpenList();
+
+        // goal states: every pattern passenger on its goal floor, elevators anywhere
+        int goalOffset = 0;
+        for (int i = 0; i < goals.length; i++) {
+            goalOffset += goals[i] * passengerStrides[i];
+        }
+        int elevatorConfigurations = goals.length == 0 ? size : passengerStrides[0];
+        for (int elevators = 0; elevators < elevatorConfigurations; elevators++) {
+            table[goalOffset + elevators] = 0;
+            openList.add(goalOffset + elevators, 0);
+        }
+
+        int[] floors = new int[numberOfElevators];
+        int[] locations = new int[goals.length];
+        while (!openList.isEmpty()) {
+            int cost = openList.minPriority();
+            int index = openList.remove();
+            if ((closed[index >>> 6] & (1L << index)) != 0) {
+                continue;
+            }
+            closed[index >>> 6] |= 1L << index;
+
+            int rest = index;
+            for (int e = 0; e < numberOfElevators; e++) {
+                floors[e] = rest % numberOfFloors;
+                rest /= numberOfFloors;
+            }
+            for (int i = 0; i < goals.length; i++) {
+                locations[i] = rest % (numberOfFloors + numberOfElevators);
+                rest /= numberOfFloors + numberOfElevators;
+            }
+
+            for (int e = 0; e < numberOfElevators; e++) {
+                if (floors[e] > 0) {
+                    relax(table, openList, index - elevatorStrides[e], cost + moveCosts[e]);
+                }
+                if (floors[e] < numberOfFloors - 1) {
+                    relax(table, openList, index + elevatorStrides[e], cost + moveCosts[e]);
+                }
+            }
+            for (int i = 0; i < goals.length; i++) {
+                if (locations[i] >= numberOfFloors) {
+                    int floor = floors[locations[i] - numberOfFloors];
+                    relax(table, openList, index + (floor - locations[i]) * passengerStrides[i], cost + 1);
+                } else {
+                    for (int e = 0; e < numberOfElevators; e++) {
+                        if (floors[e] == locations[i]) {
+                            int inside = numberOfFloors + e;
+                            relax(table, openList, index + (inside - locations[i]) * passengerStrides[i], cost + 1);
+                        }
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    private static void relax(short[] table, IntBucketOpenList openList, int index, int cost) {
+        if (table[index] >= 0 && table[index] <= cost) {
+            return;
+        }
+        if (cost > Short.MAX_VALUE) {
+            throw new IllegalStateException("pattern database cost does not fit into a short");
+        }
+        table[index] = (short) cost;
+        openList.add(index, cost);
+    }
+}
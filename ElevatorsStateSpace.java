@@ -1,11 +1,16 @@
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 
-public class ElevatorsStateSpace implements StateSpace {
+public class ElevatorsStateSpace implements PackedStateSpace, HeuristicStateSpace, PredecessorStateSpace,
+                                            SymmetricStateSpace, PrunableStateSpace, DynamicGoalStateSpace,
+                                            CacheableStateSpace {
     /*
       We make Elevators states and actions private since the search code
       cannot and should not look into the state. Since they are only
@@ -13,53 +18,152 @@ public class ElevatorsStateSpace implements StateSpace {
       without violating encapsulation.
     */
 
-    private static class PassengerLocation {
-        boolean in_elevator;
-        /*
-          depending on in_elevator, location represents the following:
-           - in_elevator: the index of the elevator in which the passenger is
-           - !in_elevator: the floor on which the passenger is
-        */
-        int location;
+    /*
+      States are bit-packed into 64-bit words. Every passenger and every
+      elevator owns a fixed-width field; fields never straddle a word
+      boundary, so reading or writing one is a shift and a mask.
 
-        public PassengerLocation(boolean in_elevator, int location) {
-            this.in_elevator = in_elevator;
-            this.location = location;
+      A passenger field holds a value v in [0, numberOfFloors + numberOfElevators):
+       - v < numberOfFloors: the passenger is on floor v
+       - v >= numberOfFloors: the passenger is in elevator v - numberOfFloors
+      An elevator field holds the floor the elevator is on.
+
+      The layout is shared by all states of one instance. It also holds
+      the Zobrist table used for hashing: the hash of a state is the XOR of
+      one random key per (field, value), so changing a field updates the
+      hash with two XORs.
+    */
+    private static class PackedLayout {
+        final int numberOfPassengers;
+        final int numberOfElevators;
+        final int numberOfFloors;
+        final int numberOfWords;
+        final int[] fieldWord;
+        final int[] fieldShift;
+        final long[] fieldMask;
+        final int[][] zobrist;
+
+        PackedLayout(int numberOfPassengers, int numberOfElevators, int numberOfFloors) {
+            this.numberOfPassengers = numberOfPassengers;
+            this.numberOfElevators = numberOfElevators;
+            this.numberOfFloors = numberOfFloors;
+            int numberOfFields = numberOfPassengers + numberOfElevators;
+            this.fieldWord = new int[numberOfFields];
+            this.fieldShift = new int[numberOfFields];
+            this.fieldMask = new long[numberOfFields];
+
+            int passengerBits = bitsFor(numberOfFloors + numberOfElevators);
+            int elevatorBits = bitsFor(numberOfFloors);
+            int word = 0;
+            int shift = 0;
+            for (int field = 0; field < numberOfFields; field++) {
+                int bits = field < numberOfPassengers ? passengerBits : elevatorBits;
+                if (shift + bits > Long.SIZE) {
+                    word++;
+                    shift = 0;
+                }
+                fieldWord[field] = word;
+                fieldShift[field] = shift;
+                fieldMask[field] = (1L << bits) - 1;
+                shift += bits;
+            }
+            this.numberOfWords = word + 1;
+
+            // fixed seed, so hash codes are reproducible between runs
+            Random random = new Random(4052169);
+            this.zobrist = new int[numberOfFields][];
+            for (int field = 0; field < numberOfFields; field++) {
+                int numberOfValues = field < numberOfPassengers ? numberOfFloors + numberOfElevators : numberOfFloors;
+                zobrist[field] = new int[numberOfValues];
+                for (int value = 0; value < numberOfValues; value++) {
+                    zobrist[field][value] = random.nextInt();
+                }
+            }
         }
 
-        public PassengerLocation(PassengerLocation o) {
-            this.in_elevator = o.in_elevator;
-            this.location = o.location;
+        private static int bitsFor(int numberOfValues) {
+            return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(numberOfValues - 1));
         }
 
-        public boolean equals(Object o) {
-            if (!(o instanceof PassengerLocation)) {
-                return false;
-            }
-            PassengerLocation other = (PassengerLocation)o;
-            return (this.in_elevator == other.in_elevator) && (this.location == other.location);
+        int passengerField(int passenger) {
+            return passenger;
         }
-    }
 
+        int elevatorField(int elevator) {
+            return numberOfPassengers + elevator;
+        }
 
-    private static class ElevatorsState implements State {
-        public ArrayList<PassengerLocation> passengers;
-        public ArrayList<Integer> elevators;
+        long word(ElevatorsState s, int word) {
+            return word == 0 ? s.packed : s.overflow[word - 1];
+        }
+
+        int get(ElevatorsState s, int field) {
+            return (int) ((word(s, fieldWord[field]) >>> fieldShift[field]) & fieldMask[field]);
+        }
 
-        public ElevatorsState(ArrayList<PassengerLocation> passengers, ArrayList<Integer> elevators) {
-            this.passengers = new ArrayList<PassengerLocation>(passengers);
-            this.elevators = new ArrayList<Integer>(elevators);
+        /*
+          Returns a copy of s in which the given field holds value. Only the
+          bits of that field are flipped; the overflow words (if any) are the
+          only thing that has to be copied. The hash is updated incrementally.
+        */
+        ElevatorsState with(ElevatorsState s, int field, int value) {
+            int word = fieldWord[field];
+            int old = get(s, field);
+            long flip = ((long) (old ^ value)) << fieldShift[field];
+            int hash = s.hash ^ zobrist[field][old] ^ zobrist[field][value];
+            if (word == 0) {
+                return new ElevatorsState(this, s.packed ^ flip, s.overflow, hash);
+            }
+            long[] overflow = s.overflow.clone();
+            overflow[word - 1] ^= flip;
+            return new ElevatorsState(this, s.packed, overflow, hash);
         }
 
-        public ElevatorsState(ElevatorsState o) {
-            this.passengers = new ArrayList<PassengerLocation>();
-            for (PassengerLocation passenger : o.passengers) {
-                this.passengers.add(new PassengerLocation(passenger));
+        ElevatorsState encode(int[] passengers, int[] elevators) {
+            long[] words = new long[numberOfWords];
+            int hash = 0;
+            for (int i = 0; i < passengers.length; i++) {
+                int field = passengerField(i);
+                words[fieldWord[field]] |= ((long) passengers[i]) << fieldShift[field];
+                hash ^= zobrist[field][passengers[i]];
+            }
+            for (int i = 0; i < elevators.length; i++) {
+                int field = elevatorField(i);
+                words[fieldWord[field]] |= ((long) elevators[i]) << fieldShift[field];
+                hash ^= zobrist[field][elevators[i]];
             }
-            this.elevators = new ArrayList<Integer>();
-            for (Integer elevator : o.elevators) {
-                this.elevators.add(elevator);
+            long[] overflow = null;
+            if (numberOfWords > 1) {
+                overflow = Arrays.copyOfRange(words, 1, numberOfWords);
             }
+            return new ElevatorsState(this, words[0], overflow, hash);
+        }
+
+        // only valid for layouts with a single word
+        ElevatorsState decode(long packed) {
+            int hash = 0;
+            for (int field = 0; field < fieldWord.length; field++) {
+                hash ^= zobrist[field][(int) ((packed >>> fieldShift[field]) & fieldMask[field])];
+            }
+            return new ElevatorsState(this, packed, null, hash);
+        }
+    }
+
+
+    private static class ElevatorsState implements State {
+        final PackedLayout layout;
+        // first word of the packed encoding
+        final long packed;
+        // remaining words, null if the instance fits into a single long
+        final long[] overflow;
+        // Zobrist hash of the fields, maintained incrementally by PackedLayout.with
+        final int hash;
+
+        public ElevatorsState(PackedLayout layout, long packed, long[] overflow, int hash) {
+            this.layout = layout;
+            this.packed = packed;
+            this.overflow = overflow;
+            this.hash = hash;
         }
 
         @Override
@@ -68,44 +172,39 @@ public class ElevatorsStateSpace implements StateSpace {
                 return false;
             }
             ElevatorsState other = (ElevatorsState)o;
-            return this.passengers.equals(other.passengers) && this.elevators.equals(other.elevators);
+            return this.hash == other.hash && this.packed == other.packed
+                && Arrays.equals(this.overflow, other.overflow);
         }
 
         @Override
         public int hashCode() {
-            return this.toString().hashCode();
+            return hash;
         }
 
         public String toString() {
-            String result = "People locations: [";
-            boolean first = true;
-            for (PassengerLocation passenger : passengers) {
-                if (!first) {
-                    result += ", ";
-                } else {
-                    first = false;
+            StringBuilder result = new StringBuilder("People locations: [");
+            for (int i = 0; i < layout.numberOfPassengers; i++) {
+                if (i > 0) {
+                    result.append(", ");
                 }
-
-                result += "(";
-                if (passenger.in_elevator) {
-                    result += "elevator ";
+                int location = layout.get(this, layout.passengerField(i));
+                result.append('(');
+                if (location >= layout.numberOfFloors) {
+                    result.append("elevator ").append(location - layout.numberOfFloors);
                 } else {
-                    result += "floor ";
+                    result.append("floor ").append(location);
                 }
-                result += passenger.location + ")";
+                result.append(')');
             }
-            result += "], Elevator locations: [";
-            first = true;
-            for (Integer elevator : elevators) {
-                if (!first) {
-                    result += ", ";
-                } else {
-                    first = false;
+            result.append("], Elevator locations: [");
+            for (int i = 0; i < layout.numberOfElevators; i++) {
+                if (i > 0) {
+                    result.append(", ");
                 }
-                result += elevator;
+                result.append(layout.get(this, layout.elevatorField(i)));
             }
-            result += "]";
-            return result;
+            result.append(']');
+            return result.toString();
         }
     }
 
@@ -183,87 +282,462 @@ public class ElevatorsStateSpace implements StateSpace {
         }
     }
 
+    /*
+      Admissible and consistent heuristics. Boarding actions cost 1 and
+      every move costs at least MIN_MOVE_COST (elevator 0 is the cheapest).
+    */
+    private static final int MIN_MOVE_COST = 10;
+
+    /*
+      Counts the boarding actions that are still needed: a passenger on a
+      wrong floor has to embark and disembark, a passenger inside an
+      elevator has to disembark. Passengers without a goal need nothing.
+    */
+    private class BoardingHeuristic implements Heuristic {
+        public int estimate(State s_) {
+            ElevatorsState s = (ElevatorsState) s_;
+            int result = 0;
+            for (int i = 0; i < numberOfPassengers; i++) {
+                result += boardingCost(i, layout.get(s, layout.passengerField(i)));
+            }
+            return result;
+        }
+    }
+
+    /*
+      Boarding actions plus a lower bound on vertical travel. A waiting
+      passenger needs some elevator to reach its floor (with moves made
+      before it boards) and then needs to be carried to its goal floor; a
+      riding passenger needs to be carried from the current floor of its
+      elevator. Moves may carry several passengers at once, so only the
+      maximum over all passengers is admissible.
+    */
+    private class TravelHeuristic implements Heuristic {
+        public int estimate(State s_) {
+            ElevatorsState s = (ElevatorsState) s_;
+            int boarding = 0;
+            int moves = 0;
+            for (int i = 0; i < numberOfPassengers; i++) {
+                int location = layout.get(s, layout.passengerField(i));
+                int goal = goal_passengers.get(i);
+                int passengerMoves;
+                if (goal == NO_GOAL) {
+                    continue;
+                } else if (location >= numberOfFloors) {
+                    boarding += 1;
+                    int floor = layout.get(s, layout.elevatorField(location - numberOfFloors));
+                    passengerMoves = Math.abs(floor - goal);
+                } else if (location != goal) {
+                    boarding += 2;
+                    int approach = Integer.MAX_VALUE;
+                    for (int j = 0; j < numberOfElevators; j++) {
+                        approach = Math.min(approach, Math.abs(layout.get(s, layout.elevatorField(j)) - location));
+                    }
+                    passengerMoves = approach + Math.abs(location - goal);
+                } else {
+                    continue;
+                }
+                moves = Math.max(moves, passengerMoves);
+            }
+            return boarding + MIN_MOVE_COST * moves;
+        }
+    }
+
+    /*
+      Pattern database heuristic, see ElevatorsPatternDatabase. Every table
+      covers a pattern of passengers; all tables share the elevator part of
+      the index. With additive, the value of a table is increased by the
+      boarding actions of the passengers outside its pattern: a table
+      charges every move and the boarding of its own passengers, everybody
+      else's boarding is charged outside of it, so no action is counted
+      twice (a 0/1 cost partitioning). The result is the maximum over the
+      tables in both cases.
+    */
+    private class PatternDatabaseHeuristic implements Heuristic {
+        final int[][] patterns;
+        final ElevatorsPatternDatabase[] tables;
+        final boolean additive;
+
+        PatternDatabaseHeuristic(int[][] patterns, ElevatorsPatternDatabase[] tables, boolean additive) {
+            this.patterns = patterns;
+            this.tables = tables;
+            this.additive = additive;
+        }
+
+        public int estimate(State s_) {
+            ElevatorsState s = (ElevatorsState) s_;
+            int elevators = 0;
+            for (int j = 0; j < numberOfElevators; j++) {
+                elevators += layout.get(s, layout.elevatorField(j)) * tables[0].elevatorStride(j);
+            }
+            int boarding = 0;
+            if (additive) {
+                for (int i = 0; i < numberOfPassengers; i++) {
+                    boarding += boardingCost(i, layout.get(s, layout.passengerField(i)));
+                }
+            }
+            int result = 0;
+            for (int t = 0; t < tables.length; t++) {
+                int index = elevators;
+                int outside = boarding;
+                for (int j = 0; j < patterns[t].length; j++) {
+                    int location = layout.get(s, layout.passengerField(patterns[t][j]));
+                    index += location * tables[t].passengerStride(j);
+                    if (additive) {
+                        outside -= boardingCost(patterns[t][j], location);
+                    }
+                }
+                result = Math.max(result, tables[t].cost(index) + outside);
+            }
+            return result;
+        }
+    }
+
+    // boarding actions passenger i still needs at the given location
+    private int boardingCost(int i, int location) {
+        int goal = goal_passengers.get(i);
+        if (goal == NO_GOAL) {
+            return 0;
+        } else if (location >= numberOfFloors) {
+            return 1;
+        }
+        return location == goal ? 0 : 2;
+    }
+
     private int numberOfPassengers;
     private int numberOfElevators;
     private int numberOfFloors;
 
+    private PackedLayout layout;
+    // every action of the instance, indexed by action code
+    private Action[] actions;
     private ElevatorsState initState;
+    // goal floor of every passenger, NO_GOAL for passengers without a request
     private ArrayList<Integer> goal_passengers;
+    // isGoal(s) holds iff (word & goalMask[w]) == goalBits[w] for every word w
+    private long[] goalMask;
+    private long[] goalBits;
+    // passengers with the same goal floor (or none), for groups of at least two
+    private int[][] symmetryGroups;
+    // set by --prune, see forEachChange
+    private boolean pruning;
+    // see CacheableStateSpace; follows the goals
+    private long fingerprint;
+    // tables of the last pattern database heuristic, by the goal floors of their pattern
+    private HashMap<String, ElevatorsPatternDatabase> patternDatabases =
+        new HashMap<String, ElevatorsPatternDatabase>();
 
     private ElevatorsStateSpace(int numberOfPassengers, int numberOfElevators,
-      int numberOfFloors, ElevatorsState initState,
+      int numberOfFloors, PackedLayout layout, ElevatorsState initState,
       ArrayList<Integer> goal_passengers) {
         this.numberOfPassengers = numberOfPassengers;
         this.numberOfElevators = numberOfElevators;
         this.numberOfFloors = numberOfFloors;
+        this.layout = layout;
         this.initState = initState;
         this.goal_passengers = goal_passengers;
-        System.out.println("Instantiating problem instance with "
-        + numberOfPassengers + " passengers, "
-        + numberOfElevators + " elevators and "
-        + numberOfFloors + " floors...");
+        this.actions = createActions();
+        updateGoal();
     }
 
     public State init() {
         return initState;
     }
 
+    public int numberOfRequests() {
+        return numberOfPassengers;
+    }
+
+    public int getGoal(int passenger) {
+        return goal_passengers.get(passenger);
+    }
+
+    /*
+      Changes the goal floor of a passenger; NO_GOAL removes the request.
+      The boarding and travel heuristics follow the change, pattern
+      databases are built for the goals at the time they are created.
+    */
+    public void setGoal(int passenger, int floor) {
+        if (passenger < 0 || passenger >= numberOfPassengers) {
+            throw new IllegalArgumentException("no passenger " + passenger);
+        }
+        if (floor != NO_GOAL && (floor < 0 || floor >= numberOfFloors)) {
+            throw new IllegalArgumentException("no floor " + floor);
+        }
+        goal_passengers.set(passenger, floor);
+        updateGoal();
+    }
+
+    // recomputes everything that depends on goal_passengers
+    private void updateGoal() {
+        goalMask = new long[layout.numberOfWords];
+        goalBits = new long[layout.numberOfWords];
+        for (int i = 0; i < numberOfPassengers; i++) {
+            int goal = goal_passengers.get(i);
+            if (goal == NO_GOAL) {
+                continue;
+            }
+            int field = layout.passengerField(i);
+            int word = layout.fieldWord[field];
+            goalMask[word] |= layout.fieldMask[field] << layout.fieldShift[field];
+            goalBits[word] |= ((long) goal) << layout.fieldShift[field];
+        }
+        symmetryGroups = createSymmetryGroups();
+        fingerprint = createFingerprint();
+    }
+
+    /*
+      FNV-1a over the sizes of the instance, the move cost of every
+      elevator, the goal floors (NO_GOAL included) and whether pruning is
+      on, finished with the mixing step of MurmurHash3 so that similar
+      instances get unrelated fingerprints. Pruning is included because it
+      removes successors: a cached plan may use actions that pruning cuts.
+    */
+    private long createFingerprint() {
+        ArrayList<Integer> data = new ArrayList<Integer>();
+        data.add(numberOfPassengers);
+        data.add(numberOfElevators);
+        data.add(numberOfFloors);
+        for (int j = 0; j < numberOfElevators; j++) {
+            data.add(new ElevatorsMoveUpAction(j, 0).cost());
+        }
+        data.addAll(goal_passengers);
+        data.add(pruning ? 1 : 0);
+        long hash = 0xcbf29ce484222325L;
+        for (int value : data) {
+            for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+                hash ^= (value >>> shift) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public long[] encode(State s_) {
+        ElevatorsState s = (ElevatorsState) s_;
+        long[] words = new long[layout.numberOfWords];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = layout.word(s, w);
+        }
+        return words;
+    }
+
     public boolean isGoal(State s_) {
         ElevatorsState s = (ElevatorsState) s_;
-        for (int i = 0; i < s.passengers.size(); i++) {
-            if (s.passengers.get(i).in_elevator ||  s.passengers.get(i).location != goal_passengers.get(i)) {
+        for (int w = 0; w < goalMask.length; w++) {
+            if ((layout.word(s, w) & goalMask[w]) != goalBits[w]) {
                 return false;
             }
         }
         return true;
     }
 
-    public ArrayList<ActionStatePair> succ(State s_) {
+    public ArrayList<ActionStatePair> succ(State s) {
+        ArrayList<ActionStatePair> result = new ArrayList<ActionStatePair>();
+        forEachSuccessor(s, (a, succ) -> result.add(new ActionStatePair(a, succ)));
+        return result;
+    }
+
+    public void forEachSuccessor(State s_, SuccessorVisitor visitor) {
         ElevatorsState s = (ElevatorsState) s_;
+        forEachChange(s, (a, field, value) -> visitor.visit(a, layout.with(s, field, value)));
+    }
 
-        ArrayList<ActionStatePair> result = new ArrayList<ActionStatePair>();
+    /*
+      Successors as packed IDs: the state is decoded once per call, and each
+      successor ID is the parent ID with the bits of one field flipped.
+    */
+    public void forEachPackedSuccessor(long id, PackedSuccessorVisitor visitor) {
+        ElevatorsState s = new ElevatorsState(layout, id, null, 0);
+        forEachChange(s, (a, field, value) -> {
+            long flip = ((long) (layout.get(s, field) ^ value)) << layout.fieldShift[field];
+            visitor.visit(a, id ^ flip);
+        });
+    }
+
+    // a successor differs from its parent in exactly one field
+    private interface ChangeVisitor {
+        void visit(Action a, int field, int value);
+    }
+
+    /*
+      With pruning, successors that no optimal plan needs are left out.
+      Passengers never get in each other's way (elevators have no
+      capacity), so the actions of one passenger can be dropped or moved
+      in a plan without affecting anyone else:
+       - a passenger in an elevator at their goal floor has to disembark
+         at some point, and doing it right away is never worse; such a
+         disembark is the only successor generated (for the passenger
+         with the lowest index, which fixes the order of these actions)
+       - a passenger on their goal floor, or without a goal, never embarks
+         again
+       - with a single elevator, a passenger never disembarks anywhere
+         but at the goal floor, since they could only re-enter the same
+         elevator later
+      Every state keeps its optimal cost to the goal, so the search stays
+      optimal, also together with heuristics and --symmetry.
+    */
+    public void setPruning(boolean enabled) {
+        pruning = enabled;
+        fingerprint = createFingerprint();
+    }
+
+    public boolean isPruning() {
+        return pruning;
+    }
+
+    private void forEachChange(ElevatorsState s, ChangeVisitor visitor) {
+        if (pruning && forcedDisembark(s, visitor)) {
+            return;
+        }
 
         // loop over all passengers to check for embark/disembark actions
-        for (int i = 0; i < s.passengers.size(); i++) {
-            PassengerLocation passenger = s.passengers.get(i);
+        for (int i = 0; i < numberOfPassengers; i++) {
+            int passengerField = layout.passengerField(i);
+            int location = layout.get(s, passengerField);
 
-            if (passenger.in_elevator) {
+            if (location >= numberOfFloors) {
                 // passenger is in an elevator -> it can disembark
-                Action a = new ElevatorsDisembarkAction(passenger.location, i);
-                ElevatorsState succ = new ElevatorsState(s);
-                succ.passengers.get(i).in_elevator = false;
-                succ.passengers.get(i).location = s.elevators.get(passenger.location);
-                result.add(new ActionStatePair(a, succ));
+                int elevator = location - numberOfFloors;
+                int floor = layout.get(s, layout.elevatorField(elevator));
+                if (pruning && numberOfElevators == 1 && floor != goal_passengers.get(i)) {
+                    continue;
+                }
+                visitor.visit(actions[disembarkCode(i, elevator)], passengerField, floor);
             } else {
+                if (pruning && (location == goal_passengers.get(i) || goal_passengers.get(i) == NO_GOAL)) {
+                    continue;
+                }
                 // passenger is on a floor -> check if it can embark any elevators
-                for (int j = 0; j < s.elevators.size(); j++) {
-                    if (s.elevators.get(j) == passenger.location) {
-                        Action a = new ElevatorsEmbarkAction(j, i);
-                        ElevatorsState succ = new ElevatorsState(s);
-                        succ.passengers.get(i).in_elevator = true;
-                        succ.passengers.get(i).location = j;
-                        result.add(new ActionStatePair(a, succ));
+                for (int j = 0; j < numberOfElevators; j++) {
+                    if (layout.get(s, layout.elevatorField(j)) == location) {
+                        visitor.visit(actions[embarkCode(i, j)], passengerField, numberOfFloors + j);
                     }
                 }
             }
         }
 
         // loop over all elevators for move up/down actions
-        for (int i = 0; i < s.elevators.size(); i++) {
-            int elevator = s.elevators.get(i);
+        for (int i = 0; i < numberOfElevators; i++) {
+            int elevatorField = layout.elevatorField(i);
+            int elevator = layout.get(s, elevatorField);
             // not on the ground floor -> move down possible
             if (elevator > 0) {
-                Action a = new ElevatorsMoveDownAction(i, elevator);
-                ElevatorsState succ = new ElevatorsState(s);
-                succ.elevators.set(i,elevator-1);
-                result.add(new ActionStatePair(a,succ));
+                visitor.visit(actions[moveDownCode(i, elevator)], elevatorField, elevator-1);
             }
             // not on the top floor -> move up possible
             if (elevator < numberOfFloors-1) {
-                Action a = new ElevatorsMoveUpAction(i, elevator);
-                ElevatorsState succ = new ElevatorsState(s);
-                succ.elevators.set(i,elevator+1);
-                result.add(new ActionStatePair(a,succ));
+                visitor.visit(actions[moveUpCode(i, elevator)], elevatorField, elevator+1);
+            }
+        }
+    }
+
+    // generates the disembark of the first passenger that has arrived, if any
+    private boolean forcedDisembark(ElevatorsState s, ChangeVisitor visitor) {
+        for (int i = 0; i < numberOfPassengers; i++) {
+            int passengerField = layout.passengerField(i);
+            int location = layout.get(s, passengerField);
+            if (location >= numberOfFloors) {
+                int elevator = location - numberOfFloors;
+                int floor = layout.get(s, layout.elevatorField(elevator));
+                if (floor == goal_passengers.get(i)) {
+                    visitor.visit(actions[disembarkCode(i, elevator)], passengerField, floor);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+      Goal states fix every passenger on its goal floor and leave the
+      elevators, and the passengers without a goal, anywhere. With all
+      goals set there are numberOfFloors^numberOfElevators.
+    */
+    public ArrayList<State> goalStates() {
+        ArrayList<State> result = new ArrayList<State>();
+        int[] passengers = new int[numberOfPassengers];
+        ArrayList<Integer> free = new ArrayList<Integer>();
+        for (int i = 0; i < numberOfPassengers; i++) {
+            if (goal_passengers.get(i) == NO_GOAL) {
+                free.add(i);
+            } else {
+                passengers[i] = goal_passengers.get(i);
+            }
+        }
+        int[] elevators = new int[numberOfElevators];
+        while (true) {
+            result.add(layout.encode(passengers, elevators));
+            // next combination of elevator floors and free passenger locations, in mixed radix
+            int i = 0;
+            while (i < numberOfElevators && elevators[i] == numberOfFloors - 1) {
+                elevators[i] = 0;
+                i++;
+            }
+            if (i < numberOfElevators) {
+                elevators[i]++;
+                continue;
+            }
+            int j = 0;
+            while (j < free.size() && passengers[free.get(j)] == numberOfFloors + numberOfElevators - 1) {
+                passengers[free.get(j)] = 0;
+                j++;
+            }
+            if (j == free.size()) {
+                break;
+            }
+            passengers[free.get(j)]++;
+        }
+        return result;
+    }
+
+    public ArrayList<ActionStatePair> pred(State s_) {
+        ElevatorsState s = (ElevatorsState) s_;
+
+        ArrayList<ActionStatePair> result = new ArrayList<ActionStatePair>();
+
+        for (int i = 0; i < numberOfPassengers; i++) {
+            int passengerField = layout.passengerField(i);
+            int location = layout.get(s, passengerField);
+
+            if (location >= numberOfFloors) {
+                // passenger is in an elevator -> it embarked on the elevator's floor
+                int elevator = location - numberOfFloors;
+                int floor = layout.get(s, layout.elevatorField(elevator));
+                Action a = actions[embarkCode(i, elevator)];
+                result.add(new ActionStatePair(a, layout.with(s, passengerField, floor)));
+            } else {
+                // passenger is on a floor -> it may have left any elevator on that floor
+                for (int j = 0; j < numberOfElevators; j++) {
+                    if (layout.get(s, layout.elevatorField(j)) == location) {
+                        Action a = actions[disembarkCode(i, j)];
+                        result.add(new ActionStatePair(a, layout.with(s, passengerField, numberOfFloors + j)));
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < numberOfElevators; i++) {
+            int elevatorField = layout.elevatorField(i);
+            int elevator = layout.get(s, elevatorField);
+            // came up from the floor below
+            if (elevator > 0) {
+                Action a = actions[moveUpCode(i, elevator-1)];
+                result.add(new ActionStatePair(a, layout.with(s, elevatorField, elevator-1)));
+            }
+            // came down from the floor above
+            if (elevator < numberOfFloors-1) {
+                Action a = actions[moveDownCode(i, elevator+1)];
+                result.add(new ActionStatePair(a, layout.with(s, elevatorField, elevator+1)));
             }
         }
 
@@ -274,6 +748,304 @@ public class ElevatorsStateSpace implements StateSpace {
         return a.cost();
     }
 
+    /*
+      The action universe is small and fixed, so every action is created
+      once per instance and shared by all successors and search nodes.
+
+      Action codes: moves come first, ordered by elevator, origin floor and
+      direction (down = 0, up = 1); then boarding actions, ordered by
+      passenger, elevator and kind (embark = 0, disembark = 1).
+    */
+    private Action[] createActions() {
+        Action[] result = new Action[2 * numberOfElevators * (numberOfFloors + numberOfPassengers)];
+        for (int e = 0; e < numberOfElevators; e++) {
+            for (int f = 0; f < numberOfFloors; f++) {
+                result[moveDownCode(e, f)] = new ElevatorsMoveDownAction(e, f);
+                result[moveUpCode(e, f)] = new ElevatorsMoveUpAction(e, f);
+            }
+            for (int p = 0; p < numberOfPassengers; p++) {
+                result[embarkCode(p, e)] = new ElevatorsEmbarkAction(e, p);
+                result[disembarkCode(p, e)] = new ElevatorsDisembarkAction(e, p);
+            }
+        }
+        return result;
+    }
+
+    private int moveDownCode(int elevator, int origin) {
+        return (elevator * numberOfFloors + origin) * 2;
+    }
+
+    private int moveUpCode(int elevator, int origin) {
+        return (elevator * numberOfFloors + origin) * 2 + 1;
+    }
+
+    private int embarkCode(int passenger, int elevator) {
+        return 2 * numberOfElevators * numberOfFloors + (passenger * numberOfElevators + elevator) * 2;
+    }
+
+    private int disembarkCode(int passenger, int elevator) {
+        return 2 * numberOfElevators * numberOfFloors + (passenger * numberOfElevators + elevator) * 2 + 1;
+    }
+
+    public int actionCode(Action a) {
+        if (a instanceof ElevatorsMoveDownAction) {
+            ElevatorsMoveDownAction m = (ElevatorsMoveDownAction) a;
+            return moveDownCode(m.elevator, m.origin_location);
+        } else if (a instanceof ElevatorsMoveUpAction) {
+            ElevatorsMoveUpAction m = (ElevatorsMoveUpAction) a;
+            return moveUpCode(m.elevator, m.origin_location);
+        } else if (a instanceof ElevatorsEmbarkAction) {
+            ElevatorsEmbarkAction b = (ElevatorsEmbarkAction) a;
+            return embarkCode(b.passenger, b.elevator);
+        } else {
+            ElevatorsDisembarkAction b = (ElevatorsDisembarkAction) a;
+            return disembarkCode(b.passenger, b.elevator);
+        }
+    }
+
+    public Action action(int code) {
+        return code >= 0 && code < actions.length ? actions[code] : null;
+    }
+
+    public Heuristic createHeuristic(String name) {
+        if (name == null || name.equals("travel")) {
+            return new TravelHeuristic();
+        } else if (name.equals("boarding")) {
+            return new BoardingHeuristic();
+        } else if (name.equals("blind")) {
+            return s -> 0;
+        }
+        return null;
+    }
+
+    public Heuristic createHeuristic(String name, SearchOptions options) {
+        if (name != null && name.equals("pdb")) {
+            return createPatternDatabaseHeuristic(options);
+        }
+        return createHeuristic(name);
+    }
+
+    /*
+      --heuristic=pdb: the passengers are split, in index order, into
+      blocks of as many passengers as fit into tables of at most
+      --pdb-size entries (default 2^24), and the passengers of a block
+      that have a goal form a pattern. The blocks do not depend on the
+      goals, so changing one request changes only the table of its
+      block. With --symmetry, passengers with the same goal floor are
+      kept in one pattern instead, largest groups first, so that the
+      heuristic does not change when they swap places; a group that does
+      not fit into a pattern is left to the boarding costs. --pdb-combine
+      is additive (default) or max.
+
+      Tables whose pattern has the same goal floors as one of the last
+      heuristic are taken over from it instead of being built again.
+      With --pdb-dir=<dir> the tables are also kept as files in dir and
+      memory-mapped by later runs on the same building.
+    */
+    private Heuristic createPatternDatabaseHeuristic(SearchOptions options) {
+        int maxSize = options.getInt("pdb-size", 1 << 24);
+        String combine = options.get("pdb-combine", "additive");
+        if (!combine.equals("additive") && !combine.equals("max")) {
+            Errors.usageError("unknown pattern database combination: " + combine);
+        }
+        File directory = options.has("pdb-dir") ? new File(options.get("pdb-dir", null)) : null;
+        ArrayList<Integer> requested = new ArrayList<Integer>();
+        for (int i = 0; i < numberOfPassengers; i++) {
+            if (goal_passengers.get(i) != NO_GOAL) {
+                requested.add(i);
+            }
+        }
+        if (requested.isEmpty()) {
+            return s -> 0;
+        }
+        int patternSize = 0;
+        while (patternSize < numberOfPassengers
+               && ElevatorsPatternDatabase.size(numberOfFloors, numberOfElevators, patternSize + 1) <= maxSize) {
+            patternSize++;
+        }
+        if (patternSize == 0) {
+            Errors.usageError("--pdb-size is too small for the elevators of this instance");
+        }
+
+        ArrayList<ArrayList<Integer>> patternList = new ArrayList<ArrayList<Integer>>();
+        if (options.getBoolean("symmetry")) {
+            ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>();
+            for (int floor = 0; floor < numberOfFloors; floor++) {
+                ArrayList<Integer> group = new ArrayList<Integer>();
+                for (int i : requested) {
+                    if (goal_passengers.get(i) == floor) {
+                        group.add(i);
+                    }
+                }
+                if (!group.isEmpty()) {
+                    groups.add(group);
+                }
+            }
+            groups.sort((a, b) -> b.size() - a.size());
+            for (ArrayList<Integer> group : groups) {
+                if (group.size() <= patternSize) {
+                    addToPattern(patternList, group, patternSize);
+                }
+            }
+        } else {
+            for (int block = 0; block < numberOfPassengers; block += patternSize) {
+                ArrayList<Integer> pattern = new ArrayList<Integer>();
+                for (int i = block; i < Math.min(block + patternSize, numberOfPassengers); i++) {
+                    if (goal_passengers.get(i) != NO_GOAL) {
+                        pattern.add(i);
+                    }
+                }
+                if (!pattern.isEmpty()) {
+                    patternList.add(pattern);
+                }
+            }
+        }
+        if (patternList.isEmpty()) {
+            // the tables share the elevators; with no passengers left one table still holds them
+            patternList.add(new ArrayList<Integer>());
+        }
+
+        int[] moveCosts = new int[numberOfElevators];
+        for (int j = 0; j < numberOfElevators; j++) {
+            moveCosts[j] = new ElevatorsMoveUpAction(j, 0).cost();
+        }
+        int numberOfTables = patternList.size();
+        int[][] patterns = new int[numberOfTables][];
+        ElevatorsPatternDatabase[] tables = new ElevatorsPatternDatabase[numberOfTables];
+        HashMap<String, ElevatorsPatternDatabase> used = new HashMap<String, ElevatorsPatternDatabase>();
+        for (int t = 0; t < numberOfTables; t++) {
+            patterns[t] = new int[patternList.get(t).size()];
+            int[] goals = new int[patterns[t].length];
+            for (int j = 0; j < patterns[t].length; j++) {
+                patterns[t][j] = patternList.get(t).get(j);
+                goals[j] = goal_passengers.get(patterns[t][j]);
+            }
+            String key = Arrays.toString(goals);
+            tables[t] = patternDatabases.get(key);
+            if (tables[t] == null) {
+                tables[t] = new ElevatorsPatternDatabase(numberOfFloors, numberOfElevators, goals, moveCosts);
+                try {
+                    tables[t].load(directory);
+                } catch (IOException e) {
+                    Errors.usageError("cannot store pattern databases in " + directory + ": " + e.getMessage());
+                }
+            }
+            used.put(key, tables[t]);
+        }
+        patternDatabases = used;
+        return new PatternDatabaseHeuristic(patterns, tables, combine.equals("additive"));
+    }
+
+    // adds the passengers to the first pattern with room for all of them
+    private static void addToPattern(ArrayList<ArrayList<Integer>> patterns, List<Integer> passengers,
+                                     int patternSize) {
+        for (ArrayList<Integer> pattern : patterns) {
+            if (pattern.size() + passengers.size() <= patternSize) {
+                pattern.addAll(passengers);
+                return;
+            }
+        }
+        patterns.add(new ArrayList<Integer>(passengers));
+    }
+
+    private int[][] createSymmetryGroups() {
+        ArrayList<int[]> groups = new ArrayList<int[]>();
+        for (int floor = NO_GOAL; floor < numberOfFloors; floor++) {
+            int size = Collections.frequency(goal_passengers, floor);
+            if (size < 2) {
+                continue;
+            }
+            int[] group = new int[size];
+            int n = 0;
+            for (int i = 0; i < numberOfPassengers; i++) {
+                if (goal_passengers.get(i) == floor) {
+                    group[n++] = i;
+                }
+            }
+            groups.add(group);
+        }
+        return groups.toArray(new int[groups.size()][]);
+    }
+
+    /*
+      Passengers with the same goal floor, or without a goal, are
+      interchangeable: swapping their locations gives a state with the
+      same successors, costs and goal status. Elevators are not, since
+      their move costs differ. The representative of a state has the
+      locations within every group of such passengers in increasing order.
+    */
+    public State canonical(State s_) {
+        ElevatorsState s = (ElevatorsState) s_;
+        if (isCanonical(s)) {
+            return s;
+        }
+        int[] passengers = new int[numberOfPassengers];
+        for (int i = 0; i < numberOfPassengers; i++) {
+            passengers[i] = layout.get(s, layout.passengerField(i));
+        }
+        for (int[] group : symmetryGroups) {
+            int[] locations = new int[group.length];
+            for (int j = 0; j < group.length; j++) {
+                locations[j] = passengers[group[j]];
+            }
+            Arrays.sort(locations);
+            for (int j = 0; j < group.length; j++) {
+                passengers[group[j]] = locations[j];
+            }
+        }
+        int[] elevators = new int[numberOfElevators];
+        for (int i = 0; i < numberOfElevators; i++) {
+            elevators[i] = layout.get(s, layout.elevatorField(i));
+        }
+        return layout.encode(passengers, elevators);
+    }
+
+    public long canonical(long id) {
+        ElevatorsState s = new ElevatorsState(layout, id, null, 0);
+        if (isCanonical(s)) {
+            return id;
+        }
+        for (int[] group : symmetryGroups) {
+            int[] locations = new int[group.length];
+            for (int j = 0; j < group.length; j++) {
+                locations[j] = layout.get(s, layout.passengerField(group[j]));
+            }
+            Arrays.sort(locations);
+            for (int j = 0; j < group.length; j++) {
+                int field = layout.passengerField(group[j]);
+                id = (id & ~(layout.fieldMask[field] << layout.fieldShift[field]))
+                     | ((long) locations[j]) << layout.fieldShift[field];
+            }
+        }
+        return id;
+    }
+
+    private boolean isCanonical(ElevatorsState s) {
+        for (int[] group : symmetryGroups) {
+            int previous = layout.get(s, layout.passengerField(group[0]));
+            for (int j = 1; j < group.length; j++) {
+                int location = layout.get(s, layout.passengerField(group[j]));
+                if (location < previous) {
+                    return false;
+                }
+                previous = location;
+            }
+        }
+        return true;
+    }
+
+    public boolean fitsInLong() {
+        return layout.numberOfWords == 1;
+    }
+
+    public long pack(State s) {
+        return ((ElevatorsState) s).packed;
+    }
+
+    public State unpack(long id) {
+        return layout.decode(id);
+    }
+
 
     public static StateSpace buildFromCmdline(ArrayList<String> args) {
         if (args.size() != 1) {
@@ -282,44 +1054,24 @@ public class ElevatorsStateSpace implements StateSpace {
 
         String filename = args.get(0);
         System.out.println("Reading input from file " + filename + "...");
-        Scanner scanner;
-        try {
-            scanner = new Scanner(new File(filename));
-        } catch (FileNotFoundException e) {
-            Errors.fileError("input file not found: " + filename);
-            scanner = new Scanner(""); // unreachable; silences compiler
-        }
-
-        int numPassengers = scanner.nextInt();
-        if (numPassengers < 0)
-            Errors.fileError("invalid number of passengers");
-        int numElevators = scanner.nextInt();
-        if (numElevators < 0)
-            Errors.fileError("invalid number of elevators");
-        int numFloors = scanner.nextInt();
-        if (numFloors < 0)
-            Errors.fileError("invalid number of floors");
-
-        ArrayList<PassengerLocation> init_passengers = new ArrayList<PassengerLocation>();
-        for (int i = 0; i < numPassengers; i++) {
-            init_passengers.add(new PassengerLocation(false, scanner.nextInt()));
-        }
-        ArrayList<Integer> init_elevators = new ArrayList<Integer>();
-        for (int i = 0; i < numElevators; i++) {
-            init_elevators.add(scanner.nextInt());
-        }
-        ElevatorsState init = new ElevatorsState(init_passengers, init_elevators);
+        ElevatorsInstance instance = ElevatorsInstance.readFile(filename);
+
+        System.out.println("Instantiating problem instance with "
+        + instance.numberOfPassengers() + " passengers, "
+        + instance.numberOfElevators() + " elevators and "
+        + instance.numberOfFloors + " floors...");
+        return create(instance);
+    }
 
+    public static ElevatorsStateSpace create(ElevatorsInstance instance) {
+        int numPassengers = instance.numberOfPassengers();
+        int numElevators = instance.numberOfElevators();
+        PackedLayout layout = new PackedLayout(numPassengers, numElevators, instance.numberOfFloors);
+        ElevatorsState init = layout.encode(instance.passengerFloors, instance.elevatorFloors);
         ArrayList<Integer> goal_passengers = new ArrayList<Integer>();
-        for (int i = 0; i < numPassengers; i++) {
-            goal_passengers.add(scanner.nextInt());
+        for (int goal : instance.goalFloors) {
+            goal_passengers.add(goal);
         }
-
-
-        if (scanner.hasNext())
-        Errors.fileError("expected end of file");
-        scanner.close();
-
-        return new ElevatorsStateSpace(numPassengers, numElevators, numFloors, init, goal_passengers);
+        return new ElevatorsStateSpace(numPassengers, numElevators, instance.numberOfFloors, layout, init, goal_passengers);
     }
 }
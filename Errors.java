@@ -1,16 +1,24 @@
 public class Errors {
     public static void usageError(String msg) {
-        System.err.println(msg);
-        System.exit(2);
+        throw new SearchError(msg, 2);
     }
 
     public static void fileError(String msg) {
-        System.err.println("error reading input stream: " + msg);
-        System.exit(1);
+        throw new SearchError("error reading input stream: " + msg, 1);
     }
 
     public static void inputError(String msg) {
-        System.err.println("invalid input: " + msg);
-        System.exit(1);
+        throw new SearchError("invalid input: " + msg, 1);
+    }
+
+    // failures of files a search writes for itself, e.g. a full disk
+    public static void writeError(String msg) {
+        throw new SearchError("error writing files: " + msg, 1);
+    }
+
+    // for main methods: reports the error and exits with its status
+    public static void exit(SearchError e) {
+        System.err.println(e.getMessage());
+        System.exit(e.getExitStatus());
     }
 }
@@ -0,0 +1,602 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/*
+  External-memory uniform-cost search with delayed duplicate detection.
+  States are handled as packed IDs (the state space must be a
+  PackedStateSpace whose states fit into a long), and neither the open nor
+  the closed list is kept on the heap:
+
+   - The open list is a set of layer files, one per path cost g. Each
+     record is a (state, parent) pair. Children are appended to the layer
+     of their cost without any duplicate check.
+   - A layer is processed in increasing order of g. It is read in chunks
+     of --chunk records, and each chunk is sorted and deduplicated in
+     memory and written out as a sorted run. The runs are then merged.
+   - The closed list is a set of sorted run files, one per processed layer,
+     merged into one run whenever there are more than MAX_CLOSED_RUNS.
+     The merged layer is joined against all closed runs with one cursor per
+     run; states not found there are new, get appended to the closed run
+     of this layer and are expanded.
+
+  All states of one layer have the same path cost, so the first goal state
+  found is optimal. The plan is rebuilt by following parent IDs through
+  the closed runs (binary search over the memory-mapped files) and
+  regenerating the successors of each parent to recover the actions.
+
+  Files are written with FileChannel and read through memory-mapped
+  buffers; they live in --spill-dir (default: a new temporary directory)
+  and are deleted when no longer needed. Heap use is bounded by the chunk
+  size and the I/O buffers. Action costs must be positive.
+*/
+public class ExternalSearch extends SearchAlgorithmBase {
+    private static final int RECORD_BYTES = 16;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_CLOSED_RUNS = 16;
+
+    private PackedStateSpace packedSpace;
+    private int chunkRecords;
+    private File spillDir;
+    private int nextFileId;
+
+    private TreeMap<Integer, RecordWriter> layers;
+    private ArrayList<RecordFile> closedRuns;
+    // files that are in neither of the above while a layer is processed
+    private RecordFile currentLayer;
+    private ArrayList<RecordFile> currentRuns;
+    private RecordWriter currentWriter;
+    private ChildBuffer children = new ChildBuffer();
+
+    public ExternalSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public ExternalSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        if (symmetry != null) {
+            // parents are looked up by their exact packed ID
+            Errors.usageError("--symmetry is not supported by ExternalSearch");
+        }
+        packedSpace = packedSpace();
+        chunkRecords = options.getInt("chunk", 1 << 20);
+        if (chunkRecords < 1) {
+            Errors.usageError("--chunk must be positive");
+        }
+    }
+
+    private PackedStateSpace packedSpace() {
+        if (!(stateSpace instanceof PackedStateSpace) || !((PackedStateSpace) stateSpace).fitsInLong()) {
+            Errors.usageError("external search needs states that can be packed into a long");
+        }
+        return (PackedStateSpace) stateSpace;
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        packedSpace = packedSpace();
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        try {
+            createSpillDir();
+            try {
+                return search();
+            } finally {
+                deleteSpillFiles();
+            }
+        } catch (IOException e) {
+            Errors.writeError("external search: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private ArrayList<Action> search() throws IOException {
+        layers = new TreeMap<Integer, RecordWriter>();
+        closedRuns = new ArrayList<RecordFile>();
+        currentRuns = new ArrayList<RecordFile>();
+        nextFileId = 0;
+
+        long init = packedSpace.pack(stateSpace.init());
+        // the root is its own parent
+        layer(0).write(init, init);
+
+        while (!layers.isEmpty()) {
+            int g = layers.firstKey();
+            currentWriter = layers.remove(g);
+            currentLayer = close(currentWriter);
+            peakOpenListSize = Math.max(peakOpenListSize, currentLayer.size);
+
+            sortIntoRuns(currentLayer, currentRuns);
+            currentLayer.delete();
+            currentLayer = null;
+
+            RecordWriter closed = openWriter("closed");
+            long[] goal = processLayer(g, currentRuns, closed);
+            for (RecordFile run : currentRuns) {
+                run.delete();
+            }
+            currentRuns.clear();
+            RecordFile closedRun = close(closed);
+            if (goal != null) {
+                closedRun.delete();
+                return extractPath(goal[0], goal[1]);
+            }
+            if (closedRun.size > 0) {
+                closedRuns.add(closedRun);
+            } else {
+                closedRun.delete();
+            }
+            if (closedRuns.size() > MAX_CLOSED_RUNS) {
+                mergeClosedRuns();
+            }
+        }
+        return unsolvable();
+    }
+
+    /*
+      Merges the sorted runs of layer g, drops duplicates and closed states,
+      and expands the rest. Returns the (state, parent) record of a goal
+      state, or null.
+    */
+    private long[] processLayer(int g, ArrayList<RecordFile> runs, RecordWriter closed) throws IOException {
+        long[] closedCursors = new long[closedRuns.size()];
+        RunMerger merger = new RunMerger(runs);
+        boolean first = true;
+        long previous = 0;
+        while (merger.hasNext()) {
+            long state = merger.state();
+            long parent = merger.parent();
+            merger.advance();
+            if (!first && state == previous) {
+                prunedStates++;
+                continue;
+            }
+            first = false;
+            previous = state;
+            if (isClosed(state, closedCursors)) {
+                prunedStates++;
+                continue;
+            }
+
+            closed.write(state, parent);
+            State s = packedSpace.unpack(state);
+            if (stateSpace.isGoal(s)) {
+                return new long[] { state, parent };
+            }
+            expandedStates++;
+            children.clear();
+            packedSpace.forEachPackedSuccessor(state, (action, successor) -> children.add(action.cost(), successor));
+            for (int i = 0; i < children.size; i++) {
+                generatedStates++;
+                if (children.costs[i] <= 0) {
+                    throw new IllegalStateException("external search needs positive action costs");
+                }
+                layer(g + children.costs[i]).write(children.ids[i], state);
+            }
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                // the open list is everything written to layer files; closed holds every expanded state
+                checkpoint(queuedRecords(), expandedStates, g);
+            }
+        }
+        return null;
+    }
+
+    private long queuedRecords() {
+        long size = 0;
+        for (RecordWriter writer : layers.values()) {
+            size += writer.size;
+        }
+        return size;
+    }
+
+    // states of a layer arrive in increasing order, so the cursors only move forward
+    private boolean isClosed(long state, long[] cursors) {
+        for (int i = 0; i < cursors.length; i++) {
+            RecordFile run = closedRuns.get(i);
+            while (cursors[i] < run.size && run.state(cursors[i]) < state) {
+                cursors[i]++;
+            }
+            if (cursors[i] < run.size && run.state(cursors[i]) == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // appends the sorted runs of layer to runs
+    private void sortIntoRuns(RecordFile layer, ArrayList<RecordFile> runs) throws IOException {
+        int capacity = (int) Math.min(chunkRecords, layer.size);
+        long[] states = new long[capacity];
+        long[] parents = new long[capacity];
+        for (long start = 0; start < layer.size; start += chunkRecords) {
+            int n = (int) Math.min(chunkRecords, layer.size - start);
+            for (int i = 0; i < n; i++) {
+                states[i] = layer.state(start + i);
+                parents[i] = layer.parent(start + i);
+            }
+            sort(states, parents, 0, n - 1);
+            RecordWriter run = openWriter("run");
+            for (int i = 0; i < n; i++) {
+                if (i == 0 || states[i] != states[i - 1]) {
+                    run.write(states[i], parents[i]);
+                } else {
+                    prunedStates++;
+                }
+            }
+            runs.add(close(run));
+        }
+    }
+
+    private void mergeClosedRuns() throws IOException {
+        RecordWriter merged = openWriter("closed");
+        RunMerger merger = new RunMerger(closedRuns);
+        while (merger.hasNext()) {
+            merged.write(merger.state(), merger.parent());
+            merger.advance();
+        }
+        for (RecordFile run : closedRuns) {
+            run.delete();
+        }
+        closedRuns.clear();
+        closedRuns.add(close(merged));
+    }
+
+    private ArrayList<Action> extractPath(long goal, long goalParent) {
+        ArrayList<Long> states = new ArrayList<Long>();
+        long current = goal;
+        long parent = goalParent;
+        states.add(current);
+        while (parent != current) {
+            states.add(parent);
+            current = parent;
+            parent = lookupParent(current);
+        }
+        Collections.reverse(states);
+
+        ArrayList<Action> path = new ArrayList<Action>();
+        for (int i = 1; i < states.size(); i++) {
+            Action best = null;
+            for (ActionStatePair successor : stateSpace.succ(packedSpace.unpack(states.get(i - 1)))) {
+                if (packedSpace.pack(successor.state) == states.get(i)
+                    && (best == null || successor.action.cost() < best.cost())) {
+                    best = successor.action;
+                }
+            }
+            path.add(best);
+        }
+        return path;
+    }
+
+    private long lookupParent(long state) {
+        for (RecordFile run : closedRuns) {
+            long lo = 0;
+            long hi = run.size - 1;
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                long s = run.state(mid);
+                if (s < state) {
+                    lo = mid + 1;
+                } else if (s > state) {
+                    hi = mid - 1;
+                } else {
+                    return run.parent(mid);
+                }
+            }
+        }
+        throw new IllegalStateException("parent of a closed state is missing");
+    }
+
+    private RecordWriter layer(int g) throws IOException {
+        RecordWriter writer = layers.get(g);
+        if (writer == null) {
+            writer = new RecordWriter(newFile("layer" + g));
+            layers.put(g, writer);
+        }
+        return writer;
+    }
+
+    private void createSpillDir() throws IOException {
+        if (options.has("spill-dir")) {
+            spillDir = new File(options.get("spill-dir", null));
+            if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+                throw new IOException("cannot create spill directory " + spillDir);
+            }
+        } else {
+            spillDir = Files.createTempDirectory("external-search").toFile();
+        }
+    }
+
+    private File newFile(String kind) {
+        return new File(spillDir, kind + "-" + (nextFileId++) + ".bin");
+    }
+
+    /*
+      Writers that are not in layers are opened and closed through these,
+      so the one being written is deleted if the search stops on an
+      exception.
+    */
+    private RecordWriter openWriter(String kind) throws IOException {
+        currentWriter = new RecordWriter(newFile(kind));
+        return currentWriter;
+    }
+
+    private RecordFile close(RecordWriter writer) throws IOException {
+        RecordFile file = writer.close();
+        currentWriter = null;
+        return file;
+    }
+
+    /*
+      Deletes every file of the search, also after an exception (a search
+      limit, an I/O error or running out of memory) in the middle of a
+      layer. A temporary spill directory is deleted with all it contains.
+    */
+    private void deleteSpillFiles() {
+        if (layers != null) {
+            for (RecordWriter writer : layers.values()) {
+                writer.discard();
+            }
+            layers = null;
+        }
+        if (currentWriter != null) {
+            currentWriter.discard();
+            currentWriter = null;
+        }
+        if (currentLayer != null) {
+            currentLayer.delete();
+            currentLayer = null;
+        }
+        for (ArrayList<RecordFile> files : Arrays.asList(currentRuns, closedRuns)) {
+            if (files != null) {
+                for (RecordFile run : files) {
+                    run.delete();
+                }
+            }
+        }
+        currentRuns = null;
+        closedRuns = null;
+        if (!options.has("spill-dir")) {
+            deleteRecursively(spillDir);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] contents = file.listFiles();
+        if (contents != null) {
+            for (File f : contents) {
+                deleteRecursively(f);
+            }
+        }
+        file.delete();
+    }
+
+    // sorts states[lo..hi] and moves parents along
+    private static void sort(long[] states, long[] parents, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivot = median(states[lo], states[mid], states[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (states[i] < pivot) {
+                    i++;
+                }
+                while (states[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(states, parents, i++, j--);
+                }
+            }
+            // recurse into the smaller half to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(states, parents, lo, j);
+                lo = i;
+            } else {
+                sort(states, parents, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && states[j - 1] > states[j]; j--) {
+                swap(states, parents, j - 1, j);
+            }
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] states, long[] parents, int i, int j) {
+        long t = states[i];
+        states[i] = states[j];
+        states[j] = t;
+        t = parents[i];
+        parents[i] = parents[j];
+        parents[j] = t;
+    }
+
+    /*
+      Successors of the state being expanded. They are collected first
+      because writing them can throw IOException, which the visitor cannot.
+    */
+    private static class ChildBuffer {
+        int[] costs = new int[16];
+        long[] ids = new long[16];
+        int size;
+
+        void add(int cost, long id) {
+            if (size == ids.length) {
+                costs = Arrays.copyOf(costs, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            costs[size] = cost;
+            ids[size] = id;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /*
+      Appends (state, parent) records to a file through a heap buffer.
+    */
+    private static class RecordWriter {
+        final File file;
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        long size;
+
+        RecordWriter(File file) throws IOException {
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        void write(long state, long parent) throws IOException {
+            if (buffer.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            buffer.putLong(state);
+            buffer.putLong(parent);
+            size++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        RecordFile close() throws IOException {
+            flush();
+            channel.close();
+            return new RecordFile(file, size);
+        }
+
+        // closes and deletes the file without writing the buffer
+        void discard() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            file.delete();
+        }
+    }
+
+    /*
+      Read-only view of a record file, memory-mapped in windows so files
+      larger than 2 GB work too.
+    */
+    private static class RecordFile {
+        private static final int WINDOW_SHIFT = 27;
+        private static final long WINDOW_BYTES = 1L << WINDOW_SHIFT;
+
+        final File file;
+        final long size;
+        private MappedByteBuffer[] windows;
+
+        RecordFile(File file, long size) throws IOException {
+            this.file = file;
+            this.size = size;
+            long bytes = size * RECORD_BYTES;
+            int numberOfWindows = (int) ((bytes + WINDOW_BYTES - 1) >>> WINDOW_SHIFT);
+            windows = new MappedByteBuffer[numberOfWindows];
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                for (int i = 0; i < numberOfWindows; i++) {
+                    long position = (long) i << WINDOW_SHIFT;
+                    windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                             Math.min(WINDOW_BYTES, bytes - position));
+                }
+            }
+        }
+
+        long state(long index) {
+            return get(index * RECORD_BYTES);
+        }
+
+        long parent(long index) {
+            return get(index * RECORD_BYTES + 8);
+        }
+
+        // records never straddle a window, since WINDOW_BYTES is a multiple of RECORD_BYTES
+        private long get(long offset) {
+            return windows[(int) (offset >>> WINDOW_SHIFT)].getLong((int) (offset & (WINDOW_BYTES - 1)));
+        }
+
+        void delete() {
+            windows = null;
+            file.delete();
+        }
+    }
+
+    /*
+      k-way merge over sorted record files, in increasing order of state.
+    */
+    private static class RunMerger {
+        private PriorityQueue<long[]> heads = new PriorityQueue<long[]>((a, b) -> Long.compare(a[0], b[0]));
+        private ArrayList<RecordFile> runs;
+        // head entries: { state, parent, run index, position in run }
+        private long[] current;
+
+        RunMerger(ArrayList<RecordFile> runs) {
+            this.runs = runs;
+            for (int i = 0; i < runs.size(); i++) {
+                if (runs.get(i).size > 0) {
+                    heads.add(new long[] { runs.get(i).state(0), runs.get(i).parent(0), i, 0 });
+                }
+            }
+            current = heads.poll();
+        }
+
+        boolean hasNext() {
+            return current != null;
+        }
+
+        long state() {
+            return current[0];
+        }
+
+        long parent() {
+            return current[1];
+        }
+
+        void advance() {
+            RecordFile run = runs.get((int) current[2]);
+            long next = current[3] + 1;
+            if (next < run.size) {
+                current[0] = run.state(next);
+                current[1] = run.parent(next);
+                current[3] = next;
+                heads.add(current);
+            }
+            current = heads.poll();
+        }
+    }
+
+    public static void main(String args[]){
+        try {
+            ExternalSearch search = new ExternalSearch(args);
+            search.runSearchAlgorithm();
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
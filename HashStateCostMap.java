@@ -0,0 +1,30 @@
+import java.util.HashMap;
+
+
+/*
+  Reference implementation backed by java.util.HashMap.
+*/
+public class HashStateCostMap implements StateCostMap {
+    private HashMap<State, Integer> costs = new HashMap<State, Integer>();
+
+    public int get(State s) {
+        Integer cost = costs.get(s);
+        return cost == null ? -1 : cost;
+    }
+
+    public void put(State s, int cost) {
+        costs.put(s, cost);
+    }
+
+    public void remove(State s) {
+        costs.remove(s);
+    }
+
+    public int size() {
+        return costs.size();
+    }
+
+    public void clear() {
+        costs.clear();
+    }
+}
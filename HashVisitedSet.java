@@ -0,0 +1,26 @@
+import java.util.HashSet;
+
+
+/*
+  Reference implementation backed by java.util.HashSet. Works for every
+  state space, but keeps all visited State objects alive.
+*/
+public class HashVisitedSet implements VisitedSet {
+    private HashSet<State> states = new HashSet<State>();
+
+    public boolean add(State s) {
+        return states.add(s);
+    }
+
+    public boolean contains(State s) {
+        return states.contains(s);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public void clear() {
+        states.clear();
+    }
+}
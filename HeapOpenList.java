@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+
+/*
+  Binary min-heap with O(log n) add and remove. Elements and priorities are
+  kept in parallel arrays, so no entry objects are allocated.
+*/
+public class HeapOpenList<E> implements OpenList<E> {
+    private Object[] elements = new Object[16];
+    private int[] priorities = new int[16];
+    private int size;
+
+    public void add(E element, int priority) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            elements[i] = elements[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+        elements[i] = element;
+        priorities[i] = priority;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E remove() {
+        E result = (E) elements[0];
+        size--;
+        Object last = elements[size];
+        int lastPriority = priorities[size];
+        elements[size] = null;
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (lastPriority <= priorities[child]) {
+                break;
+            }
+            elements[i] = elements[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+        if (size > 0) {
+            elements[i] = last;
+            priorities[i] = lastPriority;
+        }
+        return result;
+    }
+
+    public int minPriority() {
+        return priorities[0];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+}
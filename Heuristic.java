@@ -0,0 +1,9 @@
+/*
+  Estimate of the cheapest cost from a state to a goal state. Engines that
+  need optimal plans require it to be admissible (never overestimating);
+  AStarSearch also assumes it is consistent, so closed states are never
+  reopened.
+*/
+public interface Heuristic {
+    public int estimate(State s);
+}
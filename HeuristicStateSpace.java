@@ -0,0 +1,14 @@
+/*
+  Optional extension of StateSpace for state spaces that provide
+  domain-specific heuristics.
+*/
+public interface HeuristicStateSpace extends StateSpace {
+    // returns the heuristic with the given name (null: the default one),
+    // or null if there is no heuristic of that name
+    public Heuristic createHeuristic(String name);
+
+    // the same, for heuristics that take their own command line options
+    public default Heuristic createHeuristic(String name, SearchOptions options) {
+        return createHeuristic(name);
+    }
+}
@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+
+
+/*
+  Planner for a changing problem: requests can be added or removed and
+  the current state advanced along the executed plan between calls of
+  solve(). Every solve() is an A* search from the current state that
+  reuses what the earlier ones computed:
+
+   - the plan: after advance() along the planned actions the rest of the
+     plan is still optimal, so solve() returns it without searching
+   - the search tree: g-values do not depend on the goal, so after a
+     goal change at the same current state the search resumes with the
+     old open and closed lists. The open list is rebuilt with the new
+     heuristic, and closed states that now satisfy the goal are queued
+     again. After a move to another state the tree is dropped; keeping
+     the part below the new state (as in Fringe-Retrieving A*) means
+     generating the successors of all its closed states again, which
+     in this domain costs about as much as the expansions it saves.
+   - the heuristic: the default is --heuristic=pdb, and a goal change
+     builds only the pattern database tables whose pattern changed (see
+     ElevatorsStateSpace). Building the tables is most of the work of a
+     cold solve.
+
+  States can be reopened, which keeps the search optimal with an
+  inconsistent heuristic.
+
+  Takes the options of AStarSearch, except --closed, --dd and --nodes:
+  the planner keeps its own closed list, until releaseMemory(). The
+  state space must be a DynamicGoalStateSpace and a HeuristicStateSpace.
+
+  usage: IncrementalPlanner elevators <file> [options]
+  withholds the request of the last passenger, plans, executes a quarter
+  of the plan, adds the request again and compares re-planning with cold
+  solves of the same problem, building the heuristic included. One cold
+  solve runs before and one after the re-plan, so that the re-plan is
+  neither the first nor the last to run in the warmed-up JVM.
+*/
+public class IncrementalPlanner extends SearchAlgorithmBase {
+
+    private DynamicGoalStateSpace goals;
+    private Heuristic heuristic;
+    private State current;
+    // rest of the last plan, null if it is no longer known to be optimal
+    private ArrayList<Action> plan;
+    // search tree from root kept between searches, null if there is none
+    private HashMap<State, Node> nodes;
+    private State root;
+    private OpenList<Node> openList;
+
+    public IncrementalPlanner(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        if (!(stateSpace instanceof DynamicGoalStateSpace)) {
+            Errors.usageError("state space has no changeable goals");
+        }
+        goals = (DynamicGoalStateSpace) stateSpace;
+        current = stateSpace.init();
+        heuristic = createHeuristic(options.get("heuristic", "pdb"));
+    }
+
+    // a new problem: the old plan and search tree are dropped
+    @Override
+    protected void stateSpaceChanged() {
+        if (!(stateSpace instanceof DynamicGoalStateSpace)) {
+            Errors.usageError("state space has no changeable goals");
+        }
+        goals = (DynamicGoalStateSpace) stateSpace;
+        current = stateSpace.init();
+        plan = null;
+        releaseMemory();
+        heuristic = createHeuristic(options.get("heuristic", "pdb"));
+    }
+
+    public State currentState() {
+        return current;
+    }
+
+    // moves to a state that was not reached by advance, e.g. after a disturbance
+    public void setState(State s) {
+        current = s;
+        plan = null;
+    }
+
+    /*
+      Applies an executed action to the current state. The action must be
+      one of the successors the state space generates for it.
+    */
+    public void advance(Action action) {
+        State next = null;
+        for (ActionStatePair pair : stateSpace.succ(current)) {
+            if (pair.action.equals(action)) {
+                next = pair.state;
+                break;
+            }
+        }
+        if (next == null) {
+            throw new IllegalArgumentException("action not applicable: " + action);
+        }
+        current = next;
+        if (plan != null && !plan.isEmpty() && plan.get(0).equals(action)) {
+            plan.remove(0);
+        } else {
+            plan = null;
+        }
+    }
+
+    // changes one request, NO_GOAL removes it
+    public void setGoal(int object, int goal) {
+        if (goals.getGoal(object) == goal) {
+            return;
+        }
+        goals.setGoal(object, goal);
+        plan = null;
+        heuristic = createHeuristic(options.get("heuristic", "pdb"));
+    }
+
+    @Override
+    protected State start() {
+        return current;
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        if (plan != null) {
+            return new ArrayList<Action>(plan);
+        }
+        if (nodes == null || !key(root).equals(key(current))) {
+            nodes = new HashMap<State, Node>();
+            root = current;
+            nodes.put(key(current), new Node(current, null, null, 0));
+        }
+        // the heuristic may have changed, so every queued state gets a new priority
+        openList = createOpenList();
+        for (Node n : nodes.values()) {
+            if (!n.expanded || stateSpace.isGoal(n.state)) {
+                openList.add(n, n.g + heuristic.estimate(n.state));
+            }
+        }
+
+        while (!openList.isEmpty()) {
+            int f = openList.minPriority();
+            Node n = openList.remove();
+            if (nodes.get(key(n.state)) != n) {
+                // stale entry, the state was reached more cheaply
+                prunedStates++;
+                continue;
+            }
+            if (stateSpace.isGoal(n.state)) {
+                plan = extractPath(n);
+                return new ArrayList<Action>(plan);
+            }
+            n.expanded = true;
+            expandedStates++;
+            stateSpace.forEachSuccessor(n.state, (action, succ) -> {
+                generatedStates++;
+                insert(new Node(succ, n, action, n.g + stateSpace.cost(action)));
+            });
+            peakOpenListSize = Math.max(peakOpenListSize, openList.size());
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                checkpoint(openList.size(), nodes.size(), f);
+            }
+        }
+        return unsolvable();
+    }
+
+    @Override
+    protected void releaseMemory() {
+        openList = null;
+        nodes = null;
+        root = null;
+    }
+
+    private State key(State s) {
+        return symmetry == null ? s : symmetry.canonical(s);
+    }
+
+    private void insert(Node n) {
+        State key = key(n.state);
+        Node old = nodes.get(key);
+        if (old != null && old.g <= n.g) {
+            prunedStates++;
+            return;
+        }
+        if (old != null) {
+            reopenedStates++;
+        }
+        nodes.put(key, n);
+        openList.add(n, n.g + heuristic.estimate(n.state));
+    }
+
+    private static ArrayList<Action> extractPath(Node goal) {
+        ArrayList<Action> path = new ArrayList<Action>();
+        for (Node n = goal; n.parent != null; n = n.parent) {
+            path.add(n.action);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static class Node {
+        final State state;
+        final Node parent;
+        final Action action;
+        final int g;
+        boolean expanded;
+
+        Node(State state, Node parent, Action action, int g) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.g = g;
+        }
+    }
+
+    public static void main(String args[]) {
+        try {
+            runScenario(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void runScenario(String args[]) {
+        ArrayList<String> params = new ArrayList<String>(Arrays.asList(args));
+        SearchOptions options = SearchOptions.extract(params);
+        String[] spaceArgs = params.toArray(new String[params.size()]);
+        StateSpace stateSpace = createStateSpace(spaceArgs);
+        long start = System.nanoTime();
+        IncrementalPlanner planner = new IncrementalPlanner(stateSpace, options);
+        int last = planner.goals.numberOfRequests() - 1;
+        if (last < 0) {
+            Errors.usageError("instance has no requests");
+        }
+        int request = planner.goals.getGoal(last);
+
+        planner.setGoal(last, DynamicGoalStateSpace.NO_GOAL);
+        SearchResult first = report("initial plan without the last request", planner.solve(), start);
+        if (first.status != SearchResult.Status.SOLVED) {
+            return;
+        }
+        int steps = first.plan.size() / 4;
+        for (int i = 0; i < steps; i++) {
+            planner.advance(first.plan.get(i));
+        }
+        report("re-plan after " + steps + " executed steps", planner.solve(), System.nanoTime());
+
+        // the cold solves get their own state space, so that they build every table
+        coldSolve("cold solve before the re-plan", spaceArgs, options, planner.currentState());
+        start = System.nanoTime();
+        planner.setGoal(last, request);
+        report("re-plan with the last request", planner.solve(), start);
+        coldSolve("cold solve after the re-plan", spaceArgs, options, planner.currentState());
+    }
+
+    private static void coldSolve(String name, String[] spaceArgs, SearchOptions options, State s) {
+        StateSpace stateSpace = createStateSpace(spaceArgs);
+        long start = System.nanoTime();
+        IncrementalPlanner cold = new IncrementalPlanner(stateSpace, options);
+        cold.setState(s);
+        report(name, cold.solve(), start);
+    }
+
+    // the seconds since start include building the heuristic
+    private static SearchResult report(String name, SearchResult result, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "%s: %s, cost %d, %d expanded states, %.3f seconds",
+                                         name, result.status.name().toLowerCase(), result.cost,
+                                         result.expandedStates, seconds));
+        return result;
+    }
+}
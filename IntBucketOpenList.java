@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/*
+  Dial's bucket queue of int elements, see BucketOpenList. Each bucket is
+  an int array used as a stack.
+*/
+public class IntBucketOpenList implements IntOpenList {
+    private ArrayList<int[]> buckets = new ArrayList<int[]>();
+    private int[] bucketSizes = new int[16];
+    private int minPriority;
+    private int size;
+
+    public void add(int element, int priority) {
+        while (buckets.size() <= priority) {
+            buckets.add(new int[16]);
+        }
+        if (bucketSizes.length <= priority) {
+            bucketSizes = Arrays.copyOf(bucketSizes, Math.max(priority + 1, bucketSizes.length * 2));
+        }
+        int[] bucket = buckets.get(priority);
+        if (bucketSizes[priority] == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            buckets.set(priority, bucket);
+        }
+        bucket[bucketSizes[priority]++] = element;
+        if (size == 0 || priority < minPriority) {
+            minPriority = priority;
+        }
+        size++;
+    }
+
+    public int remove() {
+        minPriority();
+        size--;
+        return buckets.get(minPriority)[--bucketSizes[minPriority]];
+    }
+
+    public int minPriority() {
+        while (bucketSizes[minPriority] == 0) {
+            minPriority++;
+        }
+        return minPriority;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(bucketSizes, 0);
+        minPriority = 0;
+        size = 0;
+    }
+}
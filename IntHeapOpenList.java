@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+
+/*
+  Binary min-heap of int elements, see HeapOpenList.
+*/
+public class IntHeapOpenList implements IntOpenList {
+    private int[] elements = new int[16];
+    private int[] priorities = new int[16];
+    private int size;
+
+    public void add(int element, int priority) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            elements[i] = elements[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+        elements[i] = element;
+        priorities[i] = priority;
+    }
+
+    public int remove() {
+        int result = elements[0];
+        size--;
+        int last = elements[size];
+        int lastPriority = priorities[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (lastPriority <= priorities[child]) {
+                break;
+            }
+            elements[i] = elements[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+        if (size > 0) {
+            elements[i] = last;
+            priorities[i] = lastPriority;
+        }
+        return result;
+    }
+
+    public int minPriority() {
+        return priorities[0];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,14 @@
+/*
+  OpenList for nodes that are int indices, e.g. into a NodeStore, so the
+  entries need no boxing.
+*/
+public interface IntOpenList {
+    public void add(int element, int priority);
+    public int remove();
+    // smallest priority in the list; the list must not be empty
+    public int minPriority();
+    public boolean isEmpty();
+    public int size();
+    // drops all elements but keeps allocated buffers for reuse
+    public void clear();
+}
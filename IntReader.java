@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+
+/*
+  Reads whitespace-separated decimal integers from a byte channel. It
+  scans a reused buffer byte by byte, with no regular expressions and no
+  per-number objects. The buffer is filled up to 64 KB at a time, so it
+  usually holds input beyond the current number: when several instances
+  follow each other in one stream, all of them must be read through the
+  same IntReader. Malformed input is reported with its line number
+  through Errors.inputError, I/O failures through Errors.fileError.
+*/
+public class IntReader {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private int line = 1;
+
+    public IntReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    public IntReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    // line of the next unread byte, counting from 1
+    public int line() {
+        return line;
+    }
+
+    // skips whitespace; false if the input ends before the next number
+    public boolean hasNext() {
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get(buffer.position());
+            if (!isWhitespace(b)) {
+                return true;
+            }
+            if (b == '\n') {
+                line++;
+            }
+            buffer.position(buffer.position() + 1);
+        }
+        return false;
+    }
+
+    public int nextInt() {
+        if (!hasNext()) {
+            Errors.inputError("line " + line + ": unexpected end of input");
+        }
+        boolean negative = buffer.get(buffer.position()) == '-';
+        if (negative) {
+            buffer.position(buffer.position() + 1);
+        }
+        long value = 0;
+        int digits = 0;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get(buffer.position());
+            if (b < '0' || b > '9') {
+                if (!isWhitespace(b)) {
+                    Errors.inputError("line " + line + ": expected an integer");
+                }
+                break;
+            }
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                Errors.inputError("line " + line + ": integer too large");
+            }
+            digits++;
+            buffer.position(buffer.position() + 1);
+        }
+        if (digits == 0 || (!negative && value > Integer.MAX_VALUE)) {
+            Errors.inputError("line " + line + (digits == 0 ? ": expected an integer" : ": integer too large"));
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    // false at the end of the input
+    private boolean fill() {
+        buffer.clear();
+        try {
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            buffer.flip();
+            return n > 0;
+        } catch (IOException e) {
+            buffer.flip();
+            Errors.fileError(e.getMessage());
+            return false;
+        }
+    }
+}
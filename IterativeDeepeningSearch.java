@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/*
+  Iterative deepening on cost bounds: IDA* with --heuristic, iterative
+  deepening uniform-cost search without. Each iteration is a depth-first
+  search through StateSpace.succ that cuts off nodes with g + h above the
+  threshold, so memory does not grow with the instance: only the current
+  path and a TranspositionTable of --tt-size entries (default 2^20) are
+  kept. The table cuts off states already reached at most as cheaply in
+  this iteration, including cycles; --tt-policy selects its eviction
+  policy (two-tier or recent), --tt-size=0 turns it off.
+
+  Action costs are positive integers, so the f values of the cut-off
+  nodes are collected in a histogram. The next threshold is the smallest
+  f value at which the cut-off nodes add up to --growth - 1 times the
+  nodes of the iteration (--growth defaults to 2), so the number of
+  iterations stays small even when f grows in steps of 1. A threshold
+  beyond the smallest cut-off f can let an iteration find a plan that is
+  not optimal; the iteration then goes on as a branch-and-bound search
+  below the cost of the best plan found, so the plan it returns is
+  optimal.
+*/
+public class IterativeDeepeningSearch extends SearchAlgorithmBase {
+    // f values this far above the threshold share the last histogram bucket
+    private static final int HISTOGRAM_SIZE = 1 << 12;
+
+    private Heuristic heuristic;
+    private double growth;
+    private TranspositionTable table;
+
+    private int threshold;
+    private long[] histogram;
+    private long iterationExpansions;
+    private int iterations;
+    private ArrayList<Action> path;
+    private ArrayList<Action> bestPlan;
+    private int bestCost;
+
+    public IterativeDeepeningSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public IterativeDeepeningSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        heuristic = createHeuristic(false);
+        growth = options.getDouble("growth", 2);
+        if (growth <= 1) {
+            Errors.usageError("--growth must be greater than 1");
+        }
+        int tableSize = options.getInt("tt-size", 1 << 20);
+        if (tableSize < 0) {
+            Errors.usageError("--tt-size must not be negative");
+        }
+        TranspositionTable.Policy policy = TranspositionTable.parsePolicy(options.get("tt-policy", "two-tier"));
+        if (tableSize > 0) {
+            table = new TranspositionTable(tableSize, policy);
+        }
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        heuristic = createHeuristic(false);
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public TranspositionTable transpositionTable() {
+        return table;
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        State init = stateSpace.init();
+        threshold = estimate(init);
+        if (histogram == null) {
+            histogram = new long[HISTOGRAM_SIZE];
+            path = new ArrayList<Action>();
+        }
+        path.clear();
+        bestPlan = null;
+        bestCost = Integer.MAX_VALUE;
+        iterations = 0;
+        while (true) {
+            iterations++;
+            iterationExpansions = 0;
+            Arrays.fill(histogram, 0);
+            if (table != null) {
+                table.nextIteration();
+            }
+            search(init, 0);
+            if (bestPlan != null) {
+                return bestPlan;
+            }
+            // the next iteration repeats this one and adds the subtrees of the cut-off nodes
+            int next = nextThreshold((long) ((growth - 1) * iterationExpansions));
+            if (next < 0) {
+                return unsolvable();
+            }
+            threshold = next;
+        }
+    }
+
+    @Override
+    protected void releaseMemory() {
+        histogram = null;
+        path = null;
+    }
+
+    private void search(State s, int g) {
+        if (reachedGoal(s)) {
+            // a cached state was only entered if its plan is cheaper than the best one
+            bestPlan = completePlan(new ArrayList<Action>(path), s);
+            bestCost = g;
+            for (int i = path.size(); i < bestPlan.size(); i++) {
+                bestCost += stateSpace.cost(bestPlan.get(i));
+            }
+            return;
+        }
+        expandedStates++;
+        iterationExpansions++;
+        if ((expandedStates & CHECKPOINT_MASK) == 0) {
+            checkpoint(path.size(), table == null ? 0 : table.size(), threshold);
+        }
+        for (ActionStatePair pair : stateSpace.succ(s)) {
+            generatedStates++;
+            int successorCost = g + stateSpace.cost(pair.action);
+            // with a plan, only cheaper plans are of interest
+            if (successorCost >= bestCost) {
+                prunedStates++;
+                continue;
+            }
+            // nodes beyond the threshold go into the histogram, even if g alone is
+            int bound = Math.min(threshold, bestCost - 1);
+            int f = successorCost + estimate(pair.state);
+            if (f > bound) {
+                if (f > threshold) {
+                    histogram[Math.min(f - threshold - 1, HISTOGRAM_SIZE - 1)]++;
+                }
+                continue;
+            }
+            if (table != null && table.visited(key(pair.state), successorCost)) {
+                prunedStates++;
+                continue;
+            }
+            path.add(pair.action);
+            search(pair.state, successorCost);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    // cached states are goals of their cost to the goal, see PlanCache
+    private int estimate(State s) {
+        int cached = cachedCostToGo(s);
+        return cached >= 0 ? cached : heuristic.estimate(s);
+    }
+
+    private State key(State s) {
+        return symmetry == null ? s : symmetry.canonical(s);
+    }
+
+    /*
+      The smallest cut-off f value with at least target cut-off nodes at
+      or below it (the largest one if there are fewer); -1 if nothing was
+      cut off.
+    */
+    private int nextThreshold(long target) {
+        long count = 0;
+        int last = -1;
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            count += histogram[i];
+            last = threshold + 1 + i;
+            if (count >= target) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    public static void main(String args[]){
+        try {
+            IterativeDeepeningSearch search = new IterativeDeepeningSearch(args);
+            search.runSearchAlgorithm();
+            System.out.println("iterations: " + search.iterations());
+            if (search.transpositionTable() != null) {
+                System.out.println(String.format(Locale.ROOT,
+                                                 "transposition table: %d of %d entries used, %d evictions in the last iteration",
+                                                 search.transpositionTable().size(),
+                                                 search.transpositionTable().capacity(),
+                                                 search.transpositionTable().evictions()));
+            }
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+
+/*
+  Open-addressing hash set of primitive longs with linear probing.
+
+  Keys are scrambled with the MurmurHash3 finalizer before they are mapped
+  to a slot. Packed states differ mostly in a few low bits, and without
+  the scrambling they would form long probe runs; the same holds when the
+  table doubles and the old slots are reinserted in order, which is what
+  usually causes rehash storms with linear probing. The table grows by
+  doubling once it is MAX_LOAD full, so insertion is amortized O(1).
+
+  0 is used to mark empty slots; the key 0 itself is tracked separately.
+*/
+public class LongHashSet {
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.7;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    // adds key and returns true if it was not contained yet
+    public boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (table[slot] != 0) {
+            if (table[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+        if (++size > resizeThreshold) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int slot = slot(key);
+        while (table[slot] != 0) {
+            if (table[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // keeps the current capacity, so a reused set does not grow again
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    // number of bytes used by the table
+    public long memoryUsage() {
+        return 8L * table.length;
+    }
+
+    static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int slot(long key) {
+        return mix(key) & mask;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+    }
+
+    private void grow() {
+        long[] old = table;
+        allocate(old.length * 2);
+        for (long key : old) {
+            if (key != 0) {
+                int slot = slot(key);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+
+/*
+  Search nodes stored as parallel primitive arrays instead of objects. A
+  node is an int index; it consists of the packed ID of its state, the
+  index of its parent node (-1 for the root), the code of the action that
+  generated it (see PackedStateSpace.actionCode) and its path cost, plus
+  one closed bit. That is 20 bytes and a bit per node, with no object
+  headers and no references for the garbage collector to trace.
+*/
+public class NodeStore {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] states = new long[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] actions = new int[INITIAL_CAPACITY];
+    private int[] costs = new int[INITIAL_CAPACITY];
+    private long[] closed = new long[INITIAL_CAPACITY / 64];
+    private int size;
+
+    public int add(long state, int parent, int action, int cost) {
+        if (size == states.length) {
+            int capacity = size + (size >> 1);
+            states = Arrays.copyOf(states, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            closed = Arrays.copyOf(closed, (capacity + 63) / 64);
+        }
+        states[size] = state;
+        parents[size] = parent;
+        actions[size] = action;
+        costs[size] = cost;
+        return size++;
+    }
+
+    /*
+      A cheaper path to an open node was found. The state changes too if
+      the node stands for a class of symmetric states.
+    */
+    public void update(int node, long state, int parent, int action, int cost) {
+        states[node] = state;
+        parents[node] = parent;
+        actions[node] = action;
+        costs[node] = cost;
+    }
+
+    public long state(int node) {
+        return states[node];
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    public int action(int node) {
+        return actions[node];
+    }
+
+    public int cost(int node) {
+        return costs[node];
+    }
+
+    public boolean isClosed(int node) {
+        return (closed[node >>> 6] & (1L << node)) != 0;
+    }
+
+    public void close(int node) {
+        closed[node >>> 6] |= 1L << node;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // keeps the arrays, so a reused store does not grow again
+    public void clear() {
+        Arrays.fill(closed, 0, (size + 63) / 64, 0);
+        size = 0;
+    }
+
+    // number of bytes used by the arrays
+    public long memoryUsage() {
+        return 20L * states.length + 8L * closed.length;
+    }
+}
@@ -0,0 +1,15 @@
+/*
+  Priority queue of search nodes, ordered by an integer priority (the path
+  cost for uniform-cost search). Smallest priority is removed first; ties
+  are broken arbitrarily.
+*/
+public interface OpenList<E> {
+    public void add(E element, int priority);
+    public E remove();
+    // smallest priority in the list; the list must not be empty
+    public int minPriority();
+    public boolean isEmpty();
+    public int size();
+    // drops all elements but keeps allocated buffers for reuse
+    public void clear();
+}
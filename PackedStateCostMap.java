@@ -0,0 +1,39 @@
+/*
+  State cost map keyed on packed state IDs, backed by LongIntHashMap.
+*/
+public class PackedStateCostMap implements StateCostMap {
+    private PackedStateSpace stateSpace;
+    private LongIntHashMap costs = new LongIntHashMap();
+
+    public PackedStateCostMap(PackedStateSpace stateSpace) {
+        this.stateSpace = stateSpace;
+    }
+
+    public int get(State s) {
+        return costs.get(stateSpace.pack(s), -1);
+    }
+
+    public void put(State s, int cost) {
+        costs.put(stateSpace.pack(s), cost);
+    }
+
+    public int get(long id) {
+        return costs.get(id, -1);
+    }
+
+    public void put(long id, int cost) {
+        costs.put(id, cost);
+    }
+
+    public void remove(State s) {
+        costs.remove(stateSpace.pack(s));
+    }
+
+    public int size() {
+        return costs.size();
+    }
+
+    public void clear() {
+        costs.clear();
+    }
+}
@@ -0,0 +1,20 @@
+/*
+  Optional extension of StateSpace for state spaces whose states can be
+  encoded as a single long. Search code can then store states as primitive
+  keys instead of State objects.
+*/
+public interface PackedStateSpace extends StateSpace {
+    // true if every state of this instance can be packed into one long
+    public boolean fitsInLong();
+    public long pack(State s);
+    public State unpack(long id);
+    // small non-negative code that identifies an action of this instance
+    public int actionCode(Action a);
+    public Action action(int code);
+    /*
+      Streams the packed IDs of the successors of the state with the given
+      ID. Callers can look a successor up by its ID and only unpack it if
+      it turns out to be new.
+    */
+    public void forEachPackedSuccessor(long id, PackedSuccessorVisitor visitor);
+}
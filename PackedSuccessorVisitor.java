@@ -0,0 +1,7 @@
+/*
+  Receives the successors of a state as packed IDs, see
+  PackedStateSpace.forEachPackedSuccessor.
+*/
+public interface PackedSuccessorVisitor {
+    public void visit(Action action, long successor);
+}
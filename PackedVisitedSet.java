@@ -0,0 +1,32 @@
+/*
+  Visited set that stores the packed ID of each state in a LongHashSet.
+  The State objects themselves are not retained.
+*/
+public class PackedVisitedSet implements VisitedSet {
+    private PackedStateSpace stateSpace;
+    private LongHashSet ids = new LongHashSet();
+
+    public PackedVisitedSet(PackedStateSpace stateSpace) {
+        this.stateSpace = stateSpace;
+    }
+
+    public boolean add(State s) {
+        return ids.add(stateSpace.pack(s));
+    }
+
+    public boolean contains(State s) {
+        return ids.contains(stateSpace.pack(s));
+    }
+
+    public boolean contains(long id) {
+        return ids.contains(id);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public void clear() {
+        ids.clear();
+    }
+}
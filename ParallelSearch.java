@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+  Hash-distributed best-first search (HDA*). Every state has an owner
+  worker, chosen by its hash code. Each worker keeps its own open list and
+  the best path costs of the states it owns, so neither is shared.
+  Successors owned by another worker are collected in per-destination
+  batches and handed over through lock-free queues.
+
+  Without --heuristic this is a parallel uniform-cost search; with it, it
+  orders by g + h like AStarSearch. --threads sets the number of workers
+  (default: number of cores). --open and --closed apply to every worker.
+
+  Termination: outstanding counts every node that is queued, buffered or
+  in flight. A worker adds a node's children before the node itself is
+  retired and before the children become visible to anyone else, so the
+  counter only reaches 0 once no node is left anywhere. Optimality: a
+  goal found by any worker becomes the incumbent, and nodes whose f is
+  not below the incumbent cost are dropped. When outstanding reaches 0,
+  every node with a smaller f has been expanded, so the incumbent is
+  optimal as long as the heuristic is admissible.
+*/
+public class ParallelSearch extends SearchAlgorithmBase {
+    private static final int BATCH_SIZE = 64;
+    // expansions after which partially filled batches are sent anyway
+    private static final int FLUSH_INTERVAL = 256;
+
+    private int numberOfWorkers;
+    private Heuristic heuristic;
+
+    private Worker[] workers;
+    private AtomicLong outstanding;
+    // largest sum of the open list sizes seen by checkpointWorkers
+    private AtomicLong peakOpen;
+    private volatile boolean done;
+    private volatile Node incumbent;
+    private volatile int incumbentCost;
+    private volatile Throwable failure;
+
+    public ParallelSearch(String[] args) {
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    public ParallelSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+        numberOfWorkers = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        if (numberOfWorkers < 1) {
+            Errors.usageError("--threads must be positive");
+        }
+        heuristic = createHeuristic(false);
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        heuristic = createHeuristic(false);
+    }
+
+    @Override
+    protected ArrayList<Action> run() {
+        resetStatistics();
+        outstanding = new AtomicLong();
+        peakOpen = new AtomicLong();
+        done = false;
+        incumbent = null;
+        incumbentCost = Integer.MAX_VALUE;
+        failure = null;
+
+        workers = new Worker[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers[i] = new Worker(i);
+        }
+        State init = stateSpace.init();
+        outstanding.incrementAndGet();
+        ArrayList<Node> first = new ArrayList<Node>();
+        first.add(new Node(init, null, null, 0, heuristic.estimate(init)));
+        workers[ownerOf(init)].inbox.add(first);
+
+        Thread[] threads = new Thread[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++) {
+            threads[i] = new Thread(workers[i], "search-worker-" + i);
+            threads[i].start();
+        }
+        // after an interrupt the workers are told to stop and waited for before their counters are read
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    done = true;
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // the workers reach their own peaks at different times, so their sum is no peak
+        peakOpenListSize = peakOpen.get();
+        for (Worker worker : workers) {
+            expandedStates += worker.expanded;
+            generatedStates += worker.generated;
+            prunedStates += worker.pruned;
+            reopenedStates += worker.reopened;
+            peakOpenListSize = Math.max(peakOpenListSize, worker.peakOpenListSize);
+            helperCpuTime += worker.cpuTime;
+        }
+
+        if (interrupted && failure == null) {
+            // the incumbent is not known to be optimal
+            throw new SearchLimitExceededException("search interrupted");
+        } else if (failure instanceof SearchLimitExceededException) {
+            throw (SearchLimitExceededException) failure;
+        } else if (failure instanceof OutOfMemoryError) {
+            throw (OutOfMemoryError) failure;
+        } else if (failure != null) {
+            throw new RuntimeException("search worker failed", failure);
+        }
+        if (incumbent == null) {
+            return unsolvable();
+        }
+        return incumbent.extractPath();
+    }
+
+    @Override
+    protected void releaseMemory() {
+        workers = null;
+        incumbent = null;
+    }
+
+    /*
+      Publishes the sums over all workers, samples the total open list
+      size for peakOpenListSize and checks the limits. The counters of the
+      other workers are read without synchronization, so the totals are
+      only approximate while the search runs.
+    */
+    private void checkpointWorkers(int layer) {
+        long expanded = 0;
+        long generated = 0;
+        long pruned = 0;
+        long open = 0;
+        long closed = 0;
+        for (Worker worker : workers) {
+            expanded += worker.expanded;
+            generated += worker.generated;
+            pruned += worker.pruned;
+            open += worker.openList.size();
+            closed += worker.bestCosts.size();
+        }
+        peakOpen.accumulateAndGet(open, Math::max);
+        if (metrics != null) {
+            metrics.sample(expanded, generated, pruned, open, closed, layer);
+        }
+        checkLimits(expanded);
+    }
+
+    // symmetric states must have the same owner, since only it detects them as duplicates
+    private int ownerOf(State s) {
+        State key = symmetry == null ? s : symmetry.canonical(s);
+        return (LongHashSet.mix(key.hashCode()) & Integer.MAX_VALUE) % numberOfWorkers;
+    }
+
+    private synchronized void offerSolution(Node goal) {
+        if (goal.g < incumbentCost) {
+            incumbent = goal;
+            incumbentCost = goal.g;
+        }
+    }
+
+    private static class Node {
+        final State state;
+        final Node parent;
+        final Action action;
+        final int g;
+        final int f;
+
+        Node(State state, Node parent, Action action, int g, int f) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.g = g;
+            this.f = f;
+        }
+
+        ArrayList<Action> extractPath() {
+            ArrayList<Action> path = new ArrayList<Action>();
+            for (Node n = this; n.parent != null; n = n.parent) {
+                path.add(n.action);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+
+    private class Worker implements Runnable {
+        final int id;
+        final ConcurrentLinkedQueue<ArrayList<Node>> inbox = new ConcurrentLinkedQueue<ArrayList<Node>>();
+        final ArrayList<ArrayList<Node>> outbox = new ArrayList<ArrayList<Node>>();
+        final OpenList<Node> openList = createOpenList();
+        final StateCostMap bestCosts = createStateCostMap();
+
+        long expanded;
+        long generated;
+        long pruned;
+        long reopened;
+        long peakOpenListSize;
+        long cpuTime;
+        // children queued or buffered by the current expansion
+        int added;
+
+        Worker(int id) {
+            this.id = id;
+            for (int i = 0; i < numberOfWorkers; i++) {
+                outbox.add(new ArrayList<Node>(BATCH_SIZE));
+            }
+        }
+
+        public void run() {
+            try {
+                search();
+            } catch (Throwable t) {
+                failure = t;
+                done = true;
+            }
+            cpuTime = getCpuTime();
+        }
+
+        private void search() {
+            long sinceFlush = 0;
+            while (!done) {
+                receive();
+                if (openList.isEmpty()) {
+                    flushAll();
+                    if (outstanding.get() == 0) {
+                        done = true;
+                    } else {
+                        Thread.yield();
+                    }
+                    continue;
+                }
+
+                Node n = openList.remove();
+                if (n.g > bestCosts.get(n.state) || n.f >= incumbentCost) {
+                    // stale entry or cannot improve on the incumbent
+                    outstanding.decrementAndGet();
+                    continue;
+                }
+                if (stateSpace.isGoal(n.state)) {
+                    offerSolution(n);
+                    outstanding.decrementAndGet();
+                    continue;
+                }
+
+                expanded++;
+                added = 0;
+                stateSpace.forEachSuccessor(n.state, (action, successor) -> {
+                    generated++;
+                    int g = n.g + action.cost();
+                    Node child = new Node(successor, n, action, g, g + heuristic.estimate(successor));
+                    int owner = ownerOf(successor);
+                    if (owner == id) {
+                        if (insert(child)) {
+                            added++;
+                        }
+                    } else {
+                        outbox.get(owner).add(child);
+                        added++;
+                    }
+                });
+                // count the children before any of them can be seen by another worker
+                outstanding.addAndGet(added - 1);
+                if (++sinceFlush >= FLUSH_INTERVAL) {
+                    flushAll();
+                    sinceFlush = 0;
+                } else {
+                    flushFull();
+                }
+                peakOpenListSize = Math.max(peakOpenListSize, openList.size());
+                if ((expanded & CHECKPOINT_MASK) == 0) {
+                    checkpointWorkers(n.f);
+                }
+            }
+        }
+
+        // adds a node owned by this worker; returns false if it is a duplicate
+        private boolean insert(Node n) {
+            int best = bestCosts.get(n.state);
+            if ((best >= 0 && best <= n.g) || n.f >= incumbentCost) {
+                pruned++;
+                return false;
+            }
+            if (best >= 0) {
+                reopened++;
+            }
+            bestCosts.put(n.state, n.g);
+            openList.add(n, n.f);
+            return true;
+        }
+
+        private void receive() {
+            ArrayList<Node> batch;
+            while ((batch = inbox.poll()) != null) {
+                int dropped = 0;
+                for (Node n : batch) {
+                    if (!insert(n)) {
+                        dropped++;
+                    }
+                }
+                if (dropped > 0) {
+                    outstanding.addAndGet(-dropped);
+                }
+            }
+        }
+
+        private void flushFull() {
+            for (int i = 0; i < numberOfWorkers; i++) {
+                if (outbox.get(i).size() >= BATCH_SIZE) {
+                    send(i);
+                }
+            }
+        }
+
+        private void flushAll() {
+            for (int i = 0; i < numberOfWorkers; i++) {
+                if (!outbox.get(i).isEmpty()) {
+                    send(i);
+                }
+            }
+        }
+
+        private void send(int destination) {
+            workers[destination].inbox.add(outbox.get(destination));
+            outbox.set(destination, new ArrayList<Node>(BATCH_SIZE));
+        }
+    }
+
+    public static void main(String args[]){
+        try {
+            ParallelSearch search = new ParallelSearch(args);
+            search.runSearchAlgorithm();
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+}
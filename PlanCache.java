@@ -0,0 +1,390 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/*
+  Optimal plans of earlier searches, shared by the searches of a process
+  and optionally kept in a file for later processes. The state space must
+  be a CacheableStateSpace; states are keyed by its fingerprint and their
+  encoded words, so a plan is found again for any copy of the instance
+  with the same goals.
+
+  An entry is an optimal plan together with the states along it. The rest
+  of an optimal plan is an optimal plan from every state on it, so the
+  cache knows the exact cost to the goal, and a plan of that cost, for
+  all of these states and not just for the start:
+   - SearchAlgorithmBase.solve() looks up the start state before it
+     searches, and adds the plans of runs that proved them optimal.
+   - UniformCostSearch (and AStarSearch) and IterativeDeepeningSearch use
+     the cost to the goal of cached states as their heuristic value and
+     stop at them as if they were goals, appending the cached plan. This
+     makes the heuristic inconsistent only on the actions leaving a cached
+     state, which are never expanded, so plans stay optimal.
+
+  The cache holds at most capacity states; the plans used least recently
+  are dropped first. Looking up any state of a plan counts as a use.
+
+  File format (big-endian), plans from least to most recently used:
+
+    int MAGIC, int count
+    per plan: long fingerprint, int words per state, int length,
+              int action codes[length], long states[(length + 1) * words],
+              int cost to the goal[length + 1]
+
+  save() writes a new file and renames it over the old one, so readers
+  never see a partial file; of two processes saving the same file, the
+  last one wins. Fingerprints are 64-bit hashes, collisions are ignored.
+  A loaded plan is replayed on the instance before it is used, from the
+  state looked up on; a plan that does not match (a corrupt file, or
+  one written by a version that coded actions differently) is dropped
+  and the lookup is a miss.
+*/
+public class PlanCache {
+    private static final int MAGIC = 0x504c4331;
+    // caches opened by open(), one per file
+    private static final HashMap<String, PlanCache> openCaches = new HashMap<String, PlanCache>();
+
+    private final File file;
+    private final long capacity;
+    // access order, so iteration starts at the least recently used plan
+    private final LinkedHashMap<Entry, Entry> entries = new LinkedHashMap<Entry, Entry>(16, 0.75f, true);
+    private final HashMap<Key, Position> states = new HashMap<Key, Position>();
+    // number of cached states per fingerprint
+    private final HashMap<Long, Integer> coverage = new HashMap<Long, Integer>();
+    private long size;
+    private boolean modified;
+
+    // a cache that only lives in memory
+    public PlanCache(long capacity) {
+        this(null, capacity);
+    }
+
+    private PlanCache(File file, long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("plan cache capacity must be positive");
+        }
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /*
+      The cache kept in the given file, loaded on the first call for that
+      file (an empty cache if it does not exist yet); later calls return
+      the same cache and ignore capacity.
+    */
+    public static synchronized PlanCache open(String filename, long capacity) {
+        File file = new File(filename).getAbsoluteFile();
+        PlanCache cache = openCaches.get(file.getPath());
+        if (cache == null) {
+            cache = new PlanCache(file, capacity);
+            if (file.exists()) {
+                cache.load();
+            }
+            openCaches.put(file.getPath(), cache);
+        }
+        return cache;
+    }
+
+    /*
+      The cache selected by --plan-cache=<file>, null without it.
+      --plan-cache-size is its capacity in states (default 2^20).
+    */
+    public static PlanCache fromOptions(SearchOptions options) {
+        if (!options.has("plan-cache")) {
+            return null;
+        }
+        int capacity = options.getInt("plan-cache-size", 1 << 20);
+        if (capacity <= 0) {
+            Errors.usageError("--plan-cache-size must be positive");
+        }
+        return open(options.get("plan-cache", null), capacity);
+    }
+
+    // number of cached states
+    public synchronized long size() {
+        return size;
+    }
+
+    // true if some state of an instance with this fingerprint is cached
+    public synchronized boolean covers(long fingerprint) {
+        return coverage.containsKey(fingerprint);
+    }
+
+    // cost of an optimal plan from s, -1 if there is none in the cache
+    public synchronized int costToGo(CacheableStateSpace space, State s) {
+        Position position = lookup(space, s);
+        return position == null ? -1 : position.entry.costToGo[position.index];
+    }
+
+    // an optimal plan from s, null if there is none in the cache
+    public synchronized ArrayList<Action> plan(CacheableStateSpace space, State s) {
+        Position position = lookup(space, s);
+        if (position == null) {
+            return null;
+        }
+        int[] actions = position.entry.actions;
+        ArrayList<Action> plan = new ArrayList<Action>(actions.length - position.index);
+        for (int i = position.index; i < actions.length; i++) {
+            plan.add(space.action(actions[i]));
+        }
+        return plan;
+    }
+
+    private Position lookup(CacheableStateSpace space, State s) {
+        Position position = states.get(new Key(space.fingerprint(), space.encode(s)));
+        if (position == null) {
+            return null;
+        }
+        if (!replay(space, s, position)) {
+            entries.remove(position.entry);
+            remove(position.entry);
+            modified = true;
+            return null;
+        }
+        entries.get(position.entry);
+        return position;
+    }
+
+    /*
+      Whether the plan of the entry from position on consists of actions
+      of the instance that lead from s through the stored states, at the
+      stored costs, to a goal. Only the part before the states already
+      checked is replayed.
+    */
+    private static boolean replay(CacheableStateSpace space, State s, Position position) {
+        Entry entry = position.entry;
+        int length = entry.actions.length;
+        for (int i = position.index; i < Math.min(entry.checkedFrom, length); i++) {
+            Action action = space.action(entry.actions[i]);
+            s = action == null ? null : apply(space, s, action);
+            if (s == null || !Arrays.equals(space.encode(s), entry.states[i + 1])
+                || entry.costToGo[i] != entry.costToGo[i + 1] + space.cost(action)) {
+                return false;
+            }
+        }
+        if (entry.checkedFrom > length && !(space.isGoal(s) && entry.costToGo[length] == 0)) {
+            return false;
+        }
+        entry.checkedFrom = Math.min(entry.checkedFrom, position.index);
+        return true;
+    }
+
+    /*
+      Adds a plan from start, which must be optimal for the current goals
+      of space. Plans with more states than the capacity are not cached.
+    */
+    public synchronized void add(CacheableStateSpace space, State start, ArrayList<Action> plan) {
+        Entry entry = new Entry(space.fingerprint(), plan.size(), space.encode(start).length);
+        State s = start;
+        entry.states[0] = space.encode(s);
+        for (int i = 0; i < plan.size(); i++) {
+            Action action = plan.get(i);
+            s = apply(space, s, action);
+            if (s == null) {
+                throw new IllegalArgumentException("action not applicable: " + action);
+            }
+            entry.actions[i] = space.actionCode(action);
+            entry.states[i + 1] = space.encode(s);
+        }
+        if (!space.isGoal(s)) {
+            throw new IllegalArgumentException("plan does not reach a goal");
+        }
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            entry.costToGo[i] = entry.costToGo[i + 1] + space.cost(plan.get(i));
+        }
+        entry.checkedFrom = 0;
+        insert(entry);
+        modified = true;
+    }
+
+    // the successor of s by action, null if it is not applicable
+    private static State apply(StateSpace space, State s, Action action) {
+        for (ActionStatePair pair : space.succ(s)) {
+            if (pair.action.equals(action)) {
+                return pair.state;
+            }
+        }
+        return null;
+    }
+
+    private void insert(Entry entry) {
+        int count = entry.states.length;
+        if (count > capacity) {
+            return;
+        }
+        Iterator<Entry> it = entries.keySet().iterator();
+        while (size + count > capacity) {
+            Entry old = it.next();
+            it.remove();
+            remove(old);
+        }
+        entries.put(entry, entry);
+        size += count;
+        for (int i = 0; i < count; i++) {
+            Key key = new Key(entry.fingerprint, entry.states[i]);
+            Position old = states.put(key, new Position(entry, i));
+            if (old == null) {
+                coverage.merge(entry.fingerprint, 1, Integer::sum);
+            }
+        }
+    }
+
+    // forgets the states that are still looked up in entry
+    private void remove(Entry entry) {
+        size -= entry.states.length;
+        for (long[] words : entry.states) {
+            Key key = new Key(entry.fingerprint, words);
+            Position position = states.get(key);
+            if (position != null && position.entry == entry) {
+                states.remove(key);
+                coverage.merge(entry.fingerprint, -1, (a, b) -> a + b == 0 ? null : a + b);
+            }
+        }
+    }
+
+    // writes the cache to its file if it changed; does nothing for memory-only caches
+    public synchronized void save() {
+        if (file == null || !modified) {
+            return;
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.keySet()) {
+                    out.writeLong(entry.fingerprint);
+                    out.writeInt(entry.states[0].length);
+                    out.writeInt(entry.actions.length);
+                    for (int code : entry.actions) {
+                        out.writeInt(code);
+                    }
+                    for (long[] words : entry.states) {
+                        for (long word : words) {
+                            out.writeLong(word);
+                        }
+                    }
+                    for (int cost : entry.costToGo) {
+                        out.writeInt(cost);
+                    }
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Errors.fileError("cannot write plan cache " + file + ": " + e.getMessage());
+        }
+        modified = false;
+    }
+
+    // entry sizes are checked against the rest of the file before anything is allocated
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long remaining = file.length() - 8;
+            if (in.readInt() != MAGIC) {
+                Errors.inputError("not a plan cache: " + file);
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                long fingerprint = in.readLong();
+                int words = in.readInt();
+                int length = in.readInt();
+                remaining -= 16;
+                if (words <= 0 || length < 0 || entryBytes(words, length) > remaining) {
+                    Errors.inputError("corrupt plan cache: " + file);
+                }
+                remaining -= entryBytes(words, length);
+                Entry entry = new Entry(fingerprint, length, words);
+                for (int i = 0; i < length; i++) {
+                    entry.actions[i] = in.readInt();
+                }
+                for (long[] state : entry.states) {
+                    for (int w = 0; w < words; w++) {
+                        state[w] = in.readLong();
+                    }
+                }
+                for (int i = 0; i <= length; i++) {
+                    entry.costToGo[i] = in.readInt();
+                }
+                insert(entry);
+            }
+        } catch (EOFException e) {
+            Errors.inputError("corrupt plan cache: " + file);
+        } catch (IOException e) {
+            Errors.fileError(e.getMessage());
+        }
+    }
+
+    // size in the file of an entry after its header
+    private static long entryBytes(int words, int length) {
+        return 4L * length + (8L * words + 4) * (length + 1L);
+    }
+
+    private static class Entry {
+        final long fingerprint;
+        final int[] actions;
+        // states[i] is the state before actions[i]; the last one is a goal
+        final long[][] states;
+        final int[] costToGo;
+        // states from this index on were replayed on the instance, length + 1 for none
+        int checkedFrom;
+
+        Entry(long fingerprint, int length, int words) {
+            this.fingerprint = fingerprint;
+            this.actions = new int[length];
+            this.states = new long[length + 1][words];
+            this.costToGo = new int[length + 1];
+            this.checkedFrom = length + 1;
+        }
+    }
+
+    private static class Position {
+        final Entry entry;
+        final int index;
+
+        Position(Entry entry, int index) {
+            this.entry = entry;
+            this.index = index;
+        }
+    }
+
+    private static class Key {
+        final long fingerprint;
+        final long[] words;
+        final int hash;
+
+        Key(long fingerprint, long[] words) {
+            this.fingerprint = fingerprint;
+            this.words = words;
+            this.hash = LongHashSet.mix(fingerprint ^ Arrays.hashCode(words));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return fingerprint == other.fingerprint && Arrays.equals(words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.ArrayList;
+
+
+/*
+  Optional extension of StateSpace for state spaces that can be searched
+  backwards from their goal states.
+*/
+public interface PredecessorStateSpace extends StateSpace {
+    // every goal state of the instance
+    public ArrayList<State> goalStates();
+    // pairs (a, p) such that applying a in p leads to s; a.cost() is the cost of that step
+    public ArrayList<ActionStatePair> pred(State s);
+}
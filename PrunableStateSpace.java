@@ -0,0 +1,10 @@
+/*
+  Optional extension of StateSpace for state spaces that can leave out
+  successors which are never needed for an optimal plan. Pruning must keep
+  the optimal cost from every state the same, so that every search
+  algorithm stays optimal with it.
+*/
+public interface PrunableStateSpace extends StateSpace {
+    public void setPruning(boolean enabled);
+    public boolean isPruning();
+}
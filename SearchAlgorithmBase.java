@@ -1,4 +1,7 @@
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.lang.management.ThreadMXBean;
 
 import java.util.ArrayList;
@@ -6,36 +9,351 @@ import java.util.Arrays;
 
 
 public abstract class SearchAlgorithmBase {
+    // engines call checkpoint whenever expandedStates is a multiple of CHECKPOINT_MASK + 1
+    protected static final int CHECKPOINT_MASK = 1023;
+
     protected StateSpace stateSpace;
+    protected SearchOptions options;
     protected long expandedStates;
+    protected long generatedStates;
+    // duplicates discarded instead of being queued or expanded
+    protected long prunedStates;
+    // queued states that were queued again with a cheaper path
+    protected long reopenedStates;
+    protected long peakOpenListSize;
+    // CPU time of helper threads, which getCpuTime() does not see
+    protected long helperCpuTime;
+    // null unless --metrics or --jmx is given, see SearchMetrics
+    protected SearchMetrics metrics;
+    // set by --symmetry: closed lists and cost maps are keyed on canonical states
+    protected SymmetricStateSpace symmetry;
+    // set by unsolvable()
+    private boolean unsolvable;
+    // set by --plan-cache or setPlanCache, see PlanCache
+    private PlanCache planCache;
+    // true while run() may use the cost to the goal of cached states
+    private boolean cachedCosts;
+    // true if the last plan of solve() came from the plan cache
+    private boolean cacheHit;
+    // cached plan from the last state reachedGoal accepted, see completePlan
+    private ArrayList<Action> cachedRest;
+    // --node-limit in expansions, --time-limit in seconds and --memory-limit in MB; 0 means no limit
+    private long nodeLimit;
+    private long timeLimit;
+    private long memoryLimit;
+    private long deadline;
 
     public SearchAlgorithmBase(String args[]) {
-        stateSpace = createStateSpace(args);
+        this(stateSpaceFrom(args), optionsFrom(args));
+    }
+
+    // for programs that build the state space and the options themselves, see Solver
+    public SearchAlgorithmBase(StateSpace stateSpace, SearchOptions options) {
+        this.options = options;
+        metrics = SearchMetrics.create(options, getClass().getSimpleName());
+        useStateSpace(stateSpace);
+        nodeLimit = options.getInt("node-limit", 0);
+        timeLimit = options.getInt("time-limit", 0) * 1000000000L;
+        memoryLimit = options.getInt("memory-limit", 0) * 1048576L;
+        if (nodeLimit < 0 || timeLimit < 0 || memoryLimit < 0) {
+            Errors.usageError("limits must not be negative");
+        }
+        if (options.has("plan-cache")) {
+            setPlanCache(PlanCache.fromOptions(options));
+        }
+    }
+
+    /*
+      Makes the next solve() search another state space with the same
+      options, e.g. the next instance of a program that embeds the search
+      (see Solver). The engine keeps the buffers it allocated for earlier
+      searches where it can.
+    */
+    public void setStateSpace(StateSpace stateSpace) {
+        useStateSpace(stateSpace);
+        stateSpaceChanged();
+    }
+
+    /*
+      Engines override this to rebuild what depends on the state space,
+      e.g. their heuristic; stateSpace is already the new one.
+    */
+    protected void stateSpaceChanged() {
+    }
+
+    /*
+      The heuristic selected by --heuristic, built for the current state
+      space; engines call it again from stateSpaceChanged. If required is
+      false, h = 0 without --heuristic; otherwise the state space picks
+      its default.
+    */
+    protected Heuristic createHeuristic(boolean required) {
+        if (!required && !options.has("heuristic")) {
+            return s -> 0;
+        }
+        return createHeuristic(options.get("heuristic", null));
+    }
+
+    // the named heuristic, null for the default of the state space
+    protected Heuristic createHeuristic(String name) {
+        if (!(stateSpace instanceof HeuristicStateSpace)) {
+            Errors.usageError("state space provides no heuristics");
+        }
+        Heuristic h = ((HeuristicStateSpace) stateSpace).createHeuristic(name, options);
+        if (h == null) {
+            Errors.usageError("unknown heuristic: " + name);
+        }
+        return h;
+    }
+
+    private void useStateSpace(StateSpace stateSpace) {
+        symmetry = null;
+        if (options.getBoolean("symmetry")) {
+            if (!(stateSpace instanceof SymmetricStateSpace)) {
+                Errors.usageError("state space has no symmetries");
+            }
+            symmetry = (SymmetricStateSpace) stateSpace;
+        }
+        if (options.getBoolean("prune") && !(stateSpace instanceof PrunableStateSpace)) {
+            Errors.usageError("state space supports no pruning");
+        }
+        if (planCache != null && !(stateSpace instanceof CacheableStateSpace)) {
+            Errors.usageError("state space does not support plan caches");
+        }
+        this.stateSpace = stateSpace;
+    }
+
+    /*
+      Makes solve() answer from the cache where it can and add the plans it
+      finds; see PlanCache. The cache can be shared by several engines,
+      also of different instances. null turns caching off.
+    */
+    public void setPlanCache(PlanCache cache) {
+        if (cache != null && !(stateSpace instanceof CacheableStateSpace)) {
+            Errors.usageError("state space does not support plan caches");
+        }
+        planCache = cache;
+    }
+
+    public PlanCache planCache() {
+        return planCache;
     }
 
+    /*
+      Runs the search. Engines return the plan, or unsolvable() when the
+      open list runs empty. Budgets end it by throwing
+      SearchLimitExceededException from checkpoint.
+    */
     protected abstract ArrayList<Action> run();
 
+    // the state run() searches from
+    protected State start() {
+        return stateSpace.init();
+    }
+
+    // false if the plan the last run() returned may be more expensive than optimal
+    protected boolean planIsOptimal() {
+        return true;
+    }
+
+    // engines return this when no goal can be reached
+    protected ArrayList<Action> unsolvable() {
+        unsolvable = true;
+        return new ArrayList<Action>();
+    }
+
+    /*
+      Engines that keep their open and closed lists in fields drop them
+      here, so that the heap is usable again after an OutOfMemoryError.
+    */
+    protected void releaseMemory() {
+    }
+
+    /*
+      Runs the search under the configured budgets. An exhausted budget,
+      including running out of heap, ends the search with status
+      BUDGET_EXHAUSTED and the statistics gathered so far instead of an
+      exception. With a plan cache, a cached plan is returned without
+      searching, and optimal plans found by run() are added to the cache.
+      With --prune, pruning is on in the state space until solve()
+      returns; then it is set back to what the caller had.
+    */
+    public SearchResult solve() {
+        if (!options.getBoolean("prune")) {
+            return solveUnderBudgets();
+        }
+        PrunableStateSpace space = (PrunableStateSpace) stateSpace;
+        boolean pruning = space.isPruning();
+        space.setPruning(true);
+        try {
+            return solveUnderBudgets();
+        } finally {
+            space.setPruning(pruning);
+        }
+    }
+
+    private SearchResult solveUnderBudgets() {
+        long timeStart = getCpuTime();
+        long wallStart = System.nanoTime();
+        ArrayList<Action> plan = null;
+        SearchResult.Status status = SearchResult.Status.BUDGET_EXHAUSTED;
+        String reason = null;
+        unsolvable = false;
+        cacheHit = false;
+        if (metrics != null) {
+            metrics.start();
+        }
+        try {
+            if (planCache != null) {
+                CacheableStateSpace space = (CacheableStateSpace) stateSpace;
+                plan = planCache.plan(space, start());
+                cacheHit = plan != null;
+                cachedCosts = planCache.covers(space.fingerprint());
+            }
+            if (cacheHit) {
+                resetStatistics();
+            } else {
+                plan = run();
+            }
+            status = unsolvable ? SearchResult.Status.UNSOLVABLE : SearchResult.Status.SOLVED;
+        } catch (SearchLimitExceededException e) {
+            reason = e.getMessage();
+        } catch (OutOfMemoryError e) {
+            // free the engine's data structures before allocating anything
+            releaseMemory();
+            reason = "out of memory";
+        } finally {
+            if (metrics != null) {
+                String outcome = reason != null ? "budget-exhausted"
+                                 : plan == null ? "failed" : status.name().toLowerCase();
+                metrics.stop(outcome, expandedStates, generatedStates, prunedStates);
+            }
+            cachedCosts = false;
+        }
+        double cpuSeconds = (getCpuTime() - timeStart + helperCpuTime) / 1000000000.0;
+        double wallSeconds = (System.nanoTime() - wallStart) / 1000000000.0;
+
+        int cost = -1;
+        if (status == SearchResult.Status.SOLVED) {
+            cost = 0;
+            for (Action action : plan) {
+                cost += stateSpace.cost(action);
+            }
+        } else {
+            plan = null;
+        }
+        if (status == SearchResult.Status.SOLVED && planCache != null && !cacheHit && planIsOptimal()) {
+            planCache.add((CacheableStateSpace) stateSpace, start(), plan);
+        }
+        return new SearchResult(status, plan, cost, reason, expandedStates, generatedStates,
+                                prunedStates, reopenedStates, peakOpenListSize, cpuSeconds, wallSeconds);
+    }
+
     protected void runSearchAlgorithm() {
         System.out.println("Starting search...");
-        long timeStart = getCpuTime();
-        ArrayList<Action> solution = run();
-        long timeEnd = getCpuTime();
-        System.out.println("" + (timeEnd - timeStart) / 1000000000.0
-                           + " seconds search time");
-        System.out.println("number of expanded states: " + expandedStates);
-
-        if (solution == null) {
-            System.out.println("no solution");
+        SearchResult result = solve();
+        if (planCache != null) {
+            planCache.save();
+        }
+        if (cacheHit) {
+            System.out.println("plan taken from the plan cache");
+        }
+        System.out.println("" + result.cpuSeconds + " seconds search time");
+        System.out.println("" + result.wallSeconds + " seconds wall-clock time");
+        System.out.println("number of expanded states: " + result.expandedStates);
+        System.out.println("number of generated states: " + result.generatedStates);
+        System.out.println("number of pruned duplicates: " + result.prunedStates);
+        System.out.println("number of reopened states: " + result.reopenedStates);
+        System.out.println("peak open list size: " + result.peakOpenListSize);
+
+        if (result.status == SearchResult.Status.UNSOLVABLE) {
+            System.out.println("State-Space is unsolvable.");
+        } else if (result.status == SearchResult.Status.BUDGET_EXHAUSTED) {
+            System.out.println("no solution: " + result.reason);
         } else {
-            int totalCost = 0;
-            System.out.println("Solution:");
-            for (Action action : solution) {
-                System.out.println(action);
-                totalCost += stateSpace.cost(action);
+            // one write instead of one per action
+            StringBuilder solution = new StringBuilder("Solution:\n");
+            for (Action action : result.plan) {
+                solution.append(action).append('\n');
+            }
+            solution.append("Solution length: ").append(result.plan.size()).append('\n');
+            solution.append("Solution cost: ").append(result.cost);
+            System.out.println(solution);
+        }
+    }
+
+    /*
+      Cost of the optimal plan the plan cache has from s, -1 if there is
+      none. Engines may treat such states as goals of that cost, see
+      PlanCache.
+    */
+    protected int cachedCostToGo(State s) {
+        return cachedCosts ? planCache.costToGo((CacheableStateSpace) stateSpace, s) : -1;
+    }
+
+    // true if run() may find states with a cached cost to the goal
+    protected boolean usesCachedCosts() {
+        return cachedCosts;
+    }
+
+    /*
+      A goal state, or a state with a cached cost to the goal. The cached
+      plan is kept for completePlan, since other users of a shared cache
+      may drop it from the cache in the meantime.
+    */
+    protected boolean reachedGoal(State s) {
+        if (stateSpace.isGoal(s)) {
+            return true;
+        }
+        cachedRest = cachedCosts ? planCache.plan((CacheableStateSpace) stateSpace, s) : null;
+        return cachedRest != null;
+    }
+
+    // path to the last state reachedGoal accepted, extended by the cached plan from it
+    protected ArrayList<Action> completePlan(ArrayList<Action> path, State s) {
+        if (!stateSpace.isGoal(s)) {
+            path.addAll(cachedRest);
+        }
+        return path;
+    }
+
+    /*
+      Called by the engines every CHECKPOINT_MASK + 1 expansions: publishes
+      the counters to metrics and enforces the limits. The node limit is
+      therefore exceeded by less than CHECKPOINT_MASK + 1 expansions. The
+      memory limit is compared with the heap retained after the last
+      garbage collection, which covers the whole JVM, not just this search.
+    */
+    protected void checkpoint(long openListSize, long closedListSize, int layer) {
+        if (metrics != null) {
+            metrics.sample(expandedStates, generatedStates, prunedStates, openListSize, closedListSize, layer);
+        }
+        checkLimits(expandedStates);
+    }
+
+    protected void checkLimits(long expanded) {
+        if (nodeLimit > 0 && expanded >= nodeLimit) {
+            throw new SearchLimitExceededException("node limit of " + nodeLimit + " expansions exceeded");
+        }
+        if (timeLimit > 0 && System.nanoTime() - deadline > 0) {
+            throw new SearchLimitExceededException("time limit of " + timeLimit / 1000000000L
+                                                   + " seconds exceeded");
+        }
+        if (memoryLimit > 0 && retainedHeap() > memoryLimit) {
+            throw new SearchLimitExceededException("memory limit of " + memoryLimit / 1048576L
+                                                   + " MB exceeded");
+        }
+    }
+
+    private static long retainedHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
             }
-            System.out.println("Solution length: " +solution.size());
-            System.out.println("Solution cost: " + totalCost);
         }
+        return used;
     }
 
     protected static long getCpuTime() {
@@ -44,7 +362,97 @@ public abstract class SearchAlgorithmBase {
             bean.getCurrentThreadCpuTime() : 0;
     }
 
-    private static StateSpace createStateSpace(String args[]) {
+    /*
+      Closed list selected by --closed:
+       - hash: java.util.HashSet of State objects (default)
+       - packed: primitive open-addressing set of packed state IDs; needs
+         a PackedStateSpace whose states fit into a long
+      With --symmetry it holds canonical states.
+    */
+    protected VisitedSet createVisitedSet() {
+        String kind = options.get("closed", "hash");
+        VisitedSet closedList = null;
+        if (kind.equals("hash")) {
+            closedList = new HashVisitedSet();
+        } else if (kind.equals("packed")) {
+            if (!(stateSpace instanceof PackedStateSpace) || !((PackedStateSpace) stateSpace).fitsInLong()) {
+                Errors.usageError("--closed=packed needs states that can be packed into a long");
+            }
+            closedList = new PackedVisitedSet((PackedStateSpace) stateSpace);
+        } else {
+            Errors.usageError("unknown closed list: " + kind);
+        }
+        return symmetry == null ? closedList : new SymmetryVisitedSet(closedList, symmetry);
+    }
+
+    /*
+      Best-path-cost index used for duplicate detection on generation. It
+      follows --closed, so --closed=packed keys it on packed state IDs too,
+      and --symmetry.
+    */
+    protected StateCostMap createStateCostMap() {
+        StateCostMap costs;
+        if (options.get("closed", "hash").equals("packed")) {
+            costs = new PackedStateCostMap((PackedStateSpace) stateSpace);
+        } else {
+            costs = new HashStateCostMap();
+        }
+        return symmetry == null ? costs : new SymmetryStateCostMap(costs, symmetry);
+    }
+
+    // also starts the clock of the time limit
+    protected void resetStatistics() {
+        deadline = System.nanoTime() + timeLimit;
+        expandedStates = 0;
+        generatedStates = 0;
+        prunedStates = 0;
+        reopenedStates = 0;
+        peakOpenListSize = 0;
+        helperCpuTime = 0;
+    }
+
+    /*
+      Open list selected by --open:
+       - heap: binary heap, O(log n) per operation (default)
+       - buckets: Dial's bucket queue, amortized O(1) for integer costs
+    */
+    protected <E> OpenList<E> createOpenList() {
+        String kind = options.get("open", "heap");
+        if (kind.equals("heap")) {
+            return new HeapOpenList<E>();
+        } else if (kind.equals("buckets")) {
+            return new BucketOpenList<E>();
+        } else {
+            Errors.usageError("unknown open list: " + kind);
+        }
+        return null;
+    }
+
+    // int variant of createOpenList, for nodes kept in a NodeStore
+    protected IntOpenList createIntOpenList() {
+        String kind = options.get("open", "heap");
+        if (kind.equals("heap")) {
+            return new IntHeapOpenList();
+        } else if (kind.equals("buckets")) {
+            return new IntBucketOpenList();
+        } else {
+            Errors.usageError("unknown open list: " + kind);
+        }
+        return null;
+    }
+
+    // the state space named by the positional arguments of a command line
+    protected static StateSpace stateSpaceFrom(String args[]) {
+        ArrayList<String> params = new ArrayList<String>(Arrays.asList(args));
+        SearchOptions.extract(params);
+        return createStateSpace(params.toArray(new String[params.size()]));
+    }
+
+    protected static SearchOptions optionsFrom(String args[]) {
+        return SearchOptions.extract(new ArrayList<String>(Arrays.asList(args)));
+    }
+
+    protected static StateSpace createStateSpace(String args[]) {
         if (args.length == 0) {
             Errors.usageError("no state space given");
         }
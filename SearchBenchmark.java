@@ -0,0 +1,250 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+
+/*
+  Benchmark harness for state spaces and search engines. Every benchmark
+  runs WARMUP_ROUNDS untimed rounds first, so JIT compilation is not
+  measured, and the timed rounds print nothing. Reported per benchmark:
+  throughput, nanoseconds per operation and bytes allocated per operation
+  (from the per-thread allocation counter of the JVM).
+
+  usage: SearchBenchmark [--sample=N] [engine options] <instance file>...
+
+  For every instance file:
+   - succ: successor generation through succ, forEachSuccessor and
+     forEachPackedSuccessor on a breadth-first sample of states
+   - hash/equals: hashCode and equals of the sampled states
+   - closed lists: add + contains for --closed=hash and --closed=packed
+   - open lists: add + remove for --open=heap and --open=buckets, with the
+     path costs of the sampled states as priorities
+   - search: UniformCostSearch.solve() with the given engine options,
+     reporting expansions/s, allocation rate and the heap retained per
+     expanded state when the search ends. Without --node-limit,
+     --time-limit or --memory-limit every run is limited to
+     DEFAULT_SEARCH_NODES expansions; an instance whose search exhausts
+     its budget is reported as such and not measured.
+*/
+public class SearchBenchmark {
+    static final int WARMUP_ROUNDS = 3;
+    static final int MEASURED_ROUNDS = 5;
+    static final int DEFAULT_SAMPLE = 100000;
+    static final int DEFAULT_SEARCH_NODES = 1 << 20;
+
+    // consumed by the benchmarks so the JIT cannot drop their work
+    static long sink;
+
+    public static void main(String args[]) {
+        try {
+            runBenchmarks(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void runBenchmarks(String args[]) {
+        ArrayList<String> params = new ArrayList<String>(Arrays.asList(args));
+        SearchOptions options = SearchOptions.extract(params);
+        if (params.isEmpty()) {
+            Errors.usageError("usage: SearchBenchmark [--sample=N] [engine options] <instance file>...");
+        }
+        int sampleSize = options.getInt("sample", DEFAULT_SAMPLE);
+        ArrayList<String> engineOptions = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && !arg.startsWith("--sample=")) {
+                engineOptions.add(arg);
+            }
+        }
+
+        for (String file : params) {
+            System.out.println("== " + file);
+            ArrayList<String> stateSpaceArgs = new ArrayList<String>();
+            stateSpaceArgs.add(file);
+            StateSpace stateSpace = ElevatorsStateSpace.buildFromCmdline(stateSpaceArgs);
+            ArrayList<State> states = ClosedListBenchmark.collectStates(stateSpace, sampleSize);
+            benchmarkSuccessors(stateSpace, states);
+            benchmarkHashing(states);
+            benchmarkClosedLists(stateSpace, states);
+            benchmarkOpenLists(states);
+            benchmarkSearch(file, options, engineOptions);
+        }
+    }
+
+    private static void benchmarkSuccessors(StateSpace stateSpace, ArrayList<State> states) {
+        measure("succ (list)", states.size(), () -> {
+            long count = 0;
+            for (State s : states) {
+                count += stateSpace.succ(s).size();
+            }
+            sink += count;
+        });
+        measure("forEachSuccessor", states.size(), () -> {
+            long[] count = new long[1];
+            for (State s : states) {
+                stateSpace.forEachSuccessor(s, (a, succ) -> count[0] += succ.hashCode());
+            }
+            sink += count[0];
+        });
+        if (stateSpace instanceof PackedStateSpace && ((PackedStateSpace) stateSpace).fitsInLong()) {
+            PackedStateSpace packed = (PackedStateSpace) stateSpace;
+            long[] ids = new long[states.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = packed.pack(states.get(i));
+            }
+            measure("forEachPackedSuccessor", ids.length, () -> {
+                long[] count = new long[1];
+                for (long id : ids) {
+                    packed.forEachPackedSuccessor(id, (a, succ) -> count[0] += succ);
+                }
+                sink += count[0];
+            });
+        }
+    }
+
+    private static void benchmarkHashing(ArrayList<State> states) {
+        measure("hashCode", states.size(), () -> {
+            long h = 0;
+            for (State s : states) {
+                h += s.hashCode();
+            }
+            sink += h;
+        });
+        // compare each state with its neighbour in the sample and with itself
+        measure("equals", 2L * states.size(), () -> {
+            long equal = 0;
+            for (int i = 1; i < states.size(); i++) {
+                if (states.get(i).equals(states.get(i - 1))) {
+                    equal++;
+                }
+                if (states.get(i).equals(states.get(i))) {
+                    equal++;
+                }
+            }
+            sink += equal;
+        });
+    }
+
+    private static void benchmarkClosedLists(StateSpace stateSpace, ArrayList<State> states) {
+        measure("closed list hash", 2L * states.size(), () -> fillClosedList(new HashVisitedSet(), states));
+        if (stateSpace instanceof PackedStateSpace && ((PackedStateSpace) stateSpace).fitsInLong()) {
+            PackedStateSpace packed = (PackedStateSpace) stateSpace;
+            measure("closed list packed", 2L * states.size(), () -> fillClosedList(new PackedVisitedSet(packed), states));
+        }
+    }
+
+    private static void fillClosedList(VisitedSet closedList, ArrayList<State> states) {
+        for (State s : states) {
+            closedList.add(s);
+        }
+        long hits = 0;
+        for (State s : states) {
+            if (closedList.contains(s)) {
+                hits++;
+            }
+        }
+        sink += hits;
+    }
+
+    private static void benchmarkOpenLists(ArrayList<State> states) {
+        // priorities shaped like UCS path costs: mostly increasing, with small steps
+        int[] priorities = new int[states.size()];
+        Random random = new Random(4052169);
+        for (int i = 1; i < priorities.length; i++) {
+            priorities[i] = priorities[i - 1] + (random.nextInt(8) == 0 ? 1 : 0);
+        }
+        int maxStep = 20;
+        measure("open list heap", 2L * states.size(), () -> fillOpenList(new HeapOpenList<State>(), states, priorities, maxStep));
+        measure("open list buckets", 2L * states.size(), () -> fillOpenList(new BucketOpenList<State>(), states, priorities, maxStep));
+    }
+
+    // interleaves adds and removes the way a search does
+    private static void fillOpenList(OpenList<State> openList, ArrayList<State> states, int[] priorities, int maxStep) {
+        Random random = new Random(1);
+        long removed = 0;
+        for (int i = 0; i < states.size(); i++) {
+            openList.add(states.get(i), priorities[i] + random.nextInt(maxStep));
+            if ((i & 1) == 1) {
+                removed += openList.remove().hashCode();
+            }
+        }
+        while (!openList.isEmpty()) {
+            removed += openList.remove().hashCode();
+        }
+        sink += removed;
+    }
+
+    private static void benchmarkSearch(String file, SearchOptions options, ArrayList<String> engineOptions) {
+        ArrayList<String> args = new ArrayList<String>();
+        args.add("elevators");
+        args.add(file);
+        args.addAll(engineOptions);
+        if (!options.has("node-limit") && !options.has("time-limit") && !options.has("memory-limit")) {
+            args.add("--node-limit=" + DEFAULT_SEARCH_NODES);
+        }
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            SearchResult result = new UniformCostSearch(args.toArray(new String[args.size()])).solve();
+            if (result.status == SearchResult.Status.BUDGET_EXHAUSTED) {
+                System.out.println("search: budget exhausted (" + result.reason + "), not measured");
+                return;
+            }
+        }
+
+        long expanded = 0;
+        long time = 0;
+        long allocated = 0;
+        long retained = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            UniformCostSearch search = new UniformCostSearch(args.toArray(new String[args.size()]));
+            long before = usedMemory();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            SearchResult result = search.solve();
+            time += System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            // the engine still references its open and closed lists here
+            retained += usedMemory() - before;
+            expanded += result.expandedStates;
+        }
+        double seconds = time / 1e9;
+        System.out.println(String.format(Locale.ROOT, "search: %.0f expansions/s, %.1f MB/s allocated, %d bytes retained per expanded state",
+                                         expanded / seconds, allocated / seconds / 1e6,
+                                         expanded == 0 ? 0 : retained / expanded));
+    }
+
+    private static void measure(String name, long operationsPerRound, Runnable benchmark) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            benchmark.run();
+        }
+        long time = 0;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            benchmark.run();
+            time += System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+        }
+        double operations = (double) operationsPerRound * MEASURED_ROUNDS;
+        System.out.println(String.format(Locale.ROOT, "%s: %.0f ops/s, %.1f ns/op, %.1f bytes/op allocated",
+                                         name, operations / (time / 1e9), time / operations, allocated / operations));
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,19 @@
+/*
+  Thrown by Errors instead of exiting, so that a program embedding a
+  search can recover from a bad instance or option. Command line drivers
+  catch it in main and hand it to Errors.exit.
+*/
+public class SearchError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int exitStatus;
+
+    public SearchError(String message, int exitStatus) {
+        super(message);
+        this.exitStatus = exitStatus;
+    }
+
+    public int getExitStatus() {
+        return exitStatus;
+    }
+}
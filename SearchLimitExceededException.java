@@ -0,0 +1,12 @@
+/*
+  Thrown out of SearchAlgorithmBase.run() when the search exhausts the
+  budget set by --node-limit, --time-limit or --memory-limit. solve()
+  turns it into a result with status BUDGET_EXHAUSTED.
+*/
+public class SearchLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SearchLimitExceededException(String message) {
+        super(message);
+    }
+}
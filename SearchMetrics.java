@@ -0,0 +1,231 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/*
+  Live progress of a running search. Engines publish a sample at every
+  SearchAlgorithmBase.checkpoint; a daemon thread turns the samples into a
+  report every --metrics-interval milliseconds (default 1000). Enabled by
+  --metrics (JSON lines on stderr), --metrics=<file> (JSON lines appended
+  to the file) and/or --jmx (SearchMetricsMXBean). The file is opened
+  for every search and closed after it, so an engine that runs several
+  searches appends the lines of all of them.
+
+  When none of these options is given SearchAlgorithmBase.metrics is null
+  and a checkpoint only pays for a null check. Samples are written by
+  the search thread and read by the reporter, so all fields are volatile;
+  the reporter never touches the engine's own data structures.
+*/
+public class SearchMetrics implements SearchMetricsMXBean {
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String engine;
+    // part of the MBean name, unique in the process
+    private final int id = nextId.getAndIncrement();
+    // --metrics=<file>, null for stderr or no log
+    private final String logFile;
+    // stderr, or the file while a search runs; null for no log
+    private PrintStream log;
+    private final long intervalMillis;
+    private final boolean jmx;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private volatile long expanded;
+    private volatile long generated;
+    private volatile long duplicates;
+    private volatile long openListSize;
+    private volatile long closedListSize;
+    private volatile int layer;
+    private volatile double expansionsPerSecond;
+    private volatile long startTime;
+
+    private Thread reporter;
+    private volatile boolean running;
+    private ObjectName name;
+
+    // target is the value of --metrics: null for no log, "true" for stderr, otherwise a file
+    public SearchMetrics(String engine, String target, long intervalMillis, boolean jmx) {
+        this.engine = engine;
+        this.logFile = target == null || target.equals("true") ? null : target;
+        this.log = target != null && logFile == null ? System.err : null;
+        this.intervalMillis = intervalMillis;
+        this.jmx = jmx;
+    }
+
+    // null unless one of the metrics options is given
+    public static SearchMetrics create(SearchOptions options, String engine) {
+        if (!options.has("metrics") && !options.getBoolean("jmx")) {
+            return null;
+        }
+        String target = options.get("metrics", null);
+        if (target != null && !target.equals("true")) {
+            // fails here rather than at the first search
+            openLog(target).close();
+        }
+        int interval = options.getInt("metrics-interval", (int) DEFAULT_INTERVAL_MILLIS);
+        if (interval < 1) {
+            Errors.usageError("--metrics-interval must be positive");
+        }
+        return new SearchMetrics(engine, target, interval, options.getBoolean("jmx"));
+    }
+
+    private static PrintStream openLog(String file) {
+        try {
+            return new PrintStream(new FileOutputStream(file, true), true);
+        } catch (FileNotFoundException e) {
+            Errors.usageError("cannot open metrics log: " + file);
+            return null;
+        }
+    }
+
+    public void sample(long expanded, long generated, long duplicates,
+                       long openListSize, long closedListSize, int layer) {
+        this.expanded = expanded;
+        this.generated = generated;
+        this.duplicates = duplicates;
+        this.openListSize = openListSize;
+        this.closedListSize = closedListSize;
+        this.layer = layer;
+    }
+
+    public void start() {
+        expanded = 0;
+        generated = 0;
+        duplicates = 0;
+        openListSize = 0;
+        closedListSize = 0;
+        layer = 0;
+        expansionsPerSecond = 0;
+        startTime = System.nanoTime();
+        if (logFile != null) {
+            log = openLog(logFile);
+        }
+        if (jmx) {
+            register();
+        }
+        running = true;
+        reporter = new Thread(this::report, "search-metrics");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /*
+      Called after the search, also when it failed. The final counters are
+      passed in because the last sample may be a checkpoint interval old.
+    */
+    public void stop(String outcome, long expanded, long generated, long duplicates) {
+        this.expanded = expanded;
+        this.generated = generated;
+        this.duplicates = duplicates;
+        running = false;
+        reporter.interrupt();
+        try {
+            reporter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        write(outcome);
+        if (name != null) {
+            unregister();
+        }
+        if (logFile != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private void report() {
+        long lastTime = startTime;
+        long lastExpanded = 0;
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long current = expanded;
+            expansionsPerSecond = (current - lastExpanded) / ((now - lastTime) / 1000000000.0);
+            lastTime = now;
+            lastExpanded = current;
+            write("progress");
+        }
+    }
+
+    private void write(String event) {
+        if (log == null) {
+            return;
+        }
+        log.println(String.format(Locale.ROOT,
+                                  "{\"engine\":\"%s\",\"event\":\"%s\",\"time\":%.3f,\"expanded\":%d,"
+                                  + "\"generated\":%d,\"duplicates\":%d,\"open\":%d,\"closed\":%d,"
+                                  + "\"layer\":%d,\"expansionsPerSecond\":%.1f,\"heapUsed\":%d}",
+                                  engine, event, getElapsedSeconds(), expanded, generated, duplicates,
+                                  openListSize, closedListSize, layer, expansionsPerSecond, getHeapUsed()));
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName("search:type=SearchMetrics,name=" + engine + ",id=" + id);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("cannot register metrics MBean: " + e.getMessage());
+            name = null;
+        }
+    }
+
+    private void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+        name = null;
+    }
+
+    public long getExpandedStates() {
+        return expanded;
+    }
+
+    public long getGeneratedStates() {
+        return generated;
+    }
+
+    public long getDuplicateStates() {
+        return duplicates;
+    }
+
+    public long getOpenListSize() {
+        return openListSize;
+    }
+
+    public long getClosedListSize() {
+        return closedListSize;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public double getExpansionsPerSecond() {
+        return expansionsPerSecond;
+    }
+
+    public long getHeapUsed() {
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startTime) / 1000000000.0;
+    }
+}
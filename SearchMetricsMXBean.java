@@ -0,0 +1,26 @@
+/*
+  Management interface of SearchMetrics, registered with the platform
+  MBean server under "search:type=SearchMetrics,name=<engine>,id=<n>"
+  when --jmx is given. n numbers the engines of the process, so engines
+  running side by side (BatchSolver --jobs) each have their own bean.
+*/
+public interface SearchMetricsMXBean {
+    long getExpandedStates();
+
+    long getGeneratedStates();
+
+    long getDuplicateStates();
+
+    long getOpenListSize();
+
+    long getClosedListSize();
+
+    // f value (g for uninformed search) of the most recently sampled expansion
+    int getLayer();
+
+    double getExpansionsPerSecond();
+
+    long getHeapUsed();
+
+    double getElapsedSeconds();
+}
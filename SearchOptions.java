@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/*
+  Command line options of the form --name=value (or just --name, which
+  sets the value "true"). Options may appear anywhere on the command line
+  and are removed from the positional arguments before the state space
+  sees them.
+*/
+public class SearchOptions {
+    private HashMap<String, String> values = new HashMap<String, String>();
+
+    public static SearchOptions extract(ArrayList<String> args) {
+        SearchOptions options = new SearchOptions();
+        Iterator<String> it = args.iterator();
+        while (it.hasNext()) {
+            String arg = it.next();
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    options.set(arg.substring(2), "true");
+                } else {
+                    options.set(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+                it.remove();
+            }
+        }
+        return options;
+    }
+
+    public void set(String name, String value) {
+        values.put(name, value);
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            Errors.usageError("option --" + name + " expects an integer: " + value);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            Errors.usageError("option --" + name + " expects a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String name) {
+        return Boolean.parseBoolean(get(name, "false"));
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+
+
+/*
+  Outcome of SearchAlgorithmBase.solve(): the status, the plan and its
+  cost if one was found, and the statistics of the run, which are also
+  filled in when a budget stopped the search.
+*/
+public class SearchResult {
+    public enum Status { SOLVED, UNSOLVABLE, BUDGET_EXHAUSTED }
+
+    public final Status status;
+    // null unless status is SOLVED
+    public final ArrayList<Action> plan;
+    public final int cost;
+    // which budget ran out, null unless status is BUDGET_EXHAUSTED
+    public final String reason;
+    public final long expandedStates;
+    public final long generatedStates;
+    public final long prunedStates;
+    public final long reopenedStates;
+    public final long peakOpenListSize;
+    public final double cpuSeconds;
+    public final double wallSeconds;
+
+    public SearchResult(Status status, ArrayList<Action> plan, int cost, String reason,
+                        long expandedStates, long generatedStates, long prunedStates,
+                        long reopenedStates, long peakOpenListSize,
+                        double cpuSeconds, double wallSeconds) {
+        this.status = status;
+        this.plan = plan;
+        this.cost = cost;
+        this.reason = reason;
+        this.expandedStates = expandedStates;
+        this.generatedStates = generatedStates;
+        this.prunedStates = prunedStates;
+        this.reopenedStates = reopenedStates;
+        this.peakOpenListSize = peakOpenListSize;
+        this.cpuSeconds = cpuSeconds;
+        this.wallSeconds = wallSeconds;
+    }
+}
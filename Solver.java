@@ -0,0 +1,95 @@
+/*
+  Entry point for programs that embed the search instead of starting it
+  from the command line. State spaces are built in memory, e.g. with
+  ElevatorsStateSpace.create, and results come back as SearchResult
+  objects; nothing is printed.
+
+    SearchOptions options = new SearchOptions();
+    options.set("heuristic", "travel");
+    Solver solver = new Solver("astar", options);
+    SearchResult result = solver.solve(ElevatorsStateSpace.create(instance));
+
+  The engine is one of ucs, astar, anytime, bidirectional, external,
+  parallel or ida and takes the options of its command line. It is
+  created by the first solve() and reused by the later ones, together with
+  the buffers it keeps between runs: UniformCostSearch and AStarSearch
+  keep their open and closed lists, IterativeDeepeningSearch its
+  transposition table. The heuristic is built again for every solve(), so
+  it follows goal changes (use --pdb-dir to keep pattern databases).
+
+  With --prune the engine turns pruning on in the state space it is
+  given (PrunableStateSpace.setPruning) while it searches, and sets it
+  back when solve() returns.
+
+  A Solver is not thread-safe; use one per thread. Solvers can share a
+  PlanCache.
+*/
+public class Solver {
+    private final String engineName;
+    private final SearchOptions options;
+    private SearchAlgorithmBase engine;
+    private PlanCache planCache;
+
+    public Solver(String engine, SearchOptions options) {
+        this.engineName = engine;
+        this.options = options;
+        this.planCache = PlanCache.fromOptions(options);
+    }
+
+    public SearchResult solve(StateSpace stateSpace) {
+        if (engine == null) {
+            engine = createEngine(engineName, stateSpace, options);
+            engine.setPlanCache(planCache);
+        } else {
+            try {
+                engine.setStateSpace(stateSpace);
+            } catch (SearchError e) {
+                // the engine may be half switched over; the next solve() starts afresh
+                engine = null;
+                throw e;
+            }
+        }
+        return engine.solve();
+    }
+
+    // the engine of the last solve(), for results such as AnytimeSearch.lowerBound(); null before
+    public SearchAlgorithmBase engine() {
+        return engine;
+    }
+
+    // null turns caching off; --plan-cache sets the cache of the options
+    public void setPlanCache(PlanCache cache) {
+        planCache = cache;
+        if (engine != null) {
+            engine.setPlanCache(cache);
+        }
+    }
+
+    // frees the buffers the engine keeps for the next solve()
+    public void releaseMemory() {
+        if (engine != null) {
+            engine.releaseMemory();
+        }
+    }
+
+    public static SearchAlgorithmBase createEngine(String engine, StateSpace stateSpace, SearchOptions options) {
+        if (engine.equals("ucs")) {
+            return new UniformCostSearch(stateSpace, options);
+        } else if (engine.equals("astar")) {
+            return new AStarSearch(stateSpace, options);
+        } else if (engine.equals("anytime")) {
+            return new AnytimeSearch(stateSpace, options);
+        } else if (engine.equals("bidirectional")) {
+            return new BidirectionalSearch(stateSpace, options);
+        } else if (engine.equals("external")) {
+            return new ExternalSearch(stateSpace, options);
+        } else if (engine.equals("parallel")) {
+            return new ParallelSearch(stateSpace, options);
+        } else if (engine.equals("ida")) {
+            return new IterativeDeepeningSearch(stateSpace, options);
+        } else {
+            Errors.usageError("unknown engine: " + engine);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+/*
+  Map from states to the cheapest path cost found so far.
+*/
+public interface StateCostMap {
+    // returns the stored cost of s, or -1 if s has no entry
+    public int get(State s);
+    public void put(State s, int cost);
+    public void remove(State s);
+    public int size();
+    public void clear();
+}
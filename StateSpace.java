@@ -6,4 +6,15 @@ public interface StateSpace {
     public boolean isGoal(State s);
     public ArrayList<ActionStatePair> succ(State state);
     public int cost(Action a);
+
+    /*
+      Streams the successors of state to visitor without materializing a
+      list. State spaces that can generate successors lazily override this
+      and implement succ on top of it.
+    */
+    public default void forEachSuccessor(State state, SuccessorVisitor visitor) {
+        for (ActionStatePair pair : succ(state)) {
+            visitor.visit(pair.action, pair.state);
+        }
+    }
 }
@@ -7,6 +7,14 @@ public class StateSpaceTest {
     static final int RANDOM_WALK_LENGTH = 7;
 
     public static void main(String args[]) {
+        try {
+            dumpRandomWalk(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void dumpRandomWalk(String args[]) {
         StateSpace stateSpace = createStateSpace(args);
 
         System.out.println("Dumping initial state...");
@@ -0,0 +1,7 @@
+/*
+  Receives the successors of a state one at a time, see
+  StateSpace.forEachSuccessor.
+*/
+public interface SuccessorVisitor {
+    public void visit(Action action, State successor);
+}
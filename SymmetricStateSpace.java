@@ -0,0 +1,16 @@
+/*
+  Optional extension of StateSpace for state spaces with symmetries:
+  permutations of objects that map states to states with the same
+  successors (up to the permutation), the same action costs and the same
+  goal status. Symmetric states have the same cost to the goal, so a
+  search only needs to close one state of each symmetry class.
+
+  canonical maps every state of a class to the same representative. It
+  is only used to key closed lists and cost maps; plans are still built
+  from the states the search actually generated.
+*/
+public interface SymmetricStateSpace extends StateSpace {
+    public State canonical(State s);
+    // the same on packed IDs, for PackedStateSpaces whose states fit into a long
+    public long canonical(long id);
+}
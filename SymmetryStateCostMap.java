@@ -0,0 +1,33 @@
+/*
+  Cost map keyed on the canonical representative of every state, the
+  counterpart of SymmetryVisitedSet.
+*/
+public class SymmetryStateCostMap implements StateCostMap {
+    private StateCostMap costs;
+    private SymmetricStateSpace stateSpace;
+
+    public SymmetryStateCostMap(StateCostMap costs, SymmetricStateSpace stateSpace) {
+        this.costs = costs;
+        this.stateSpace = stateSpace;
+    }
+
+    public int get(State s) {
+        return costs.get(stateSpace.canonical(s));
+    }
+
+    public void put(State s, int cost) {
+        costs.put(stateSpace.canonical(s), cost);
+    }
+
+    public void remove(State s) {
+        costs.remove(stateSpace.canonical(s));
+    }
+
+    public int size() {
+        return costs.size();
+    }
+
+    public void clear() {
+        costs.clear();
+    }
+}
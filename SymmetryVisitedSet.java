@@ -0,0 +1,29 @@
+/*
+  Closed list that stores the canonical representative of every state, so
+  that symmetric states count as duplicates.
+*/
+public class SymmetryVisitedSet implements VisitedSet {
+    private VisitedSet states;
+    private SymmetricStateSpace stateSpace;
+
+    public SymmetryVisitedSet(VisitedSet states, SymmetricStateSpace stateSpace) {
+        this.states = states;
+        this.stateSpace = stateSpace;
+    }
+
+    public boolean add(State s) {
+        return states.add(stateSpace.canonical(s));
+    }
+
+    public boolean contains(State s) {
+        return states.contains(stateSpace.canonical(s));
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public void clear() {
+        states.clear();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+  Fixed-size, lossy table of the states reached in the current iteration
+  of IterativeDeepeningSearch, with the cheapest path cost they were
+  reached at. It never grows: a state hashes to a bucket of two slots,
+  and when both are taken the eviction policy picks what is kept:
+   - two-tier (default): slot 0 keeps the shallowest entry (the smallest
+     g, which cuts off the largest subtree), slot 1 takes all others
+   - recent: a new entry replaces the older of the two
+  Slot 1 always takes new entries: a table that only kept shallow entries
+  would stop recording once full and miss the transpositions deeper down.
+
+  Losing an entry only costs search time, never correctness. Entries are
+  stamped with their iteration, so starting a new iteration is O(1).
+*/
+public class TranspositionTable {
+    public enum Policy { TWO_TIER, RECENT }
+
+    private final Policy policy;
+    private final State[] states;
+    private final int[] costs;
+    private final int[] stamps;
+    private final int bucketMask;
+    private int iteration = 1;
+    private int size;
+    private long evictions;
+
+    // entries is rounded up to a power of two, at least 2
+    public TranspositionTable(int entries, Policy policy) {
+        int capacity = 2;
+        while (capacity < entries && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        this.policy = policy;
+        this.states = new State[capacity];
+        this.costs = new int[capacity];
+        this.stamps = new int[capacity];
+        this.bucketMask = capacity / 2 - 1;
+    }
+
+    public static Policy parsePolicy(String name) {
+        if (name.equals("two-tier")) {
+            return Policy.TWO_TIER;
+        } else if (name.equals("recent")) {
+            return Policy.RECENT;
+        }
+        Errors.usageError("unknown transposition table policy: " + name);
+        return null;
+    }
+
+    public int capacity() {
+        return states.length;
+    }
+
+    // entries of the current iteration
+    public int size() {
+        return size;
+    }
+
+    // entries of the current iteration that were overwritten by other states
+    public long evictions() {
+        return evictions;
+    }
+
+    public void nextIteration() {
+        iteration++;
+        size = 0;
+        evictions = 0;
+    }
+
+    /*
+      True if s was already reached at a cost of at most g in this
+      iteration; otherwise records that it was reached at g.
+    */
+    public boolean visited(State s, int g) {
+        int slot = (LongHashSet.mix(s.hashCode()) & bucketMask) << 1;
+        for (int i = slot; i < slot + 2; i++) {
+            if (stamps[i] == iteration && states[i].equals(s)) {
+                if (costs[i] <= g) {
+                    return true;
+                }
+                costs[i] = g;
+                // the cheaper entry is placed as a new one would be
+                if (i == slot + 1 && (policy == Policy.RECENT || g < costs[slot])) {
+                    swap(slot);
+                }
+                return false;
+            }
+        }
+        store(slot, s, g);
+        return false;
+    }
+
+    private void store(int slot, State s, int g) {
+        if (stamps[slot] != iteration) {
+            put(slot, s, g);
+            return;
+        }
+        boolean full = stamps[slot + 1] == iteration;
+        if (policy == Policy.TWO_TIER && g >= costs[slot]) {
+            put(slot + 1, s, g);
+        } else {
+            // slot 0 holds the newest (recent) or the shallowest (two-tier) entry
+            move(slot, slot + 1);
+            put(slot, s, g);
+        }
+        if (full) {
+            evictions++;
+        }
+    }
+
+    private void swap(int slot) {
+        State s = states[slot];
+        int g = costs[slot];
+        states[slot] = states[slot + 1];
+        costs[slot] = costs[slot + 1];
+        states[slot + 1] = s;
+        costs[slot + 1] = g;
+    }
+
+    private void move(int from, int to) {
+        put(to, states[from], costs[from]);
+    }
+
+    private void put(int i, State s, int g) {
+        if (stamps[i] != iteration) {
+            size++;
+        }
+        states[i] = s;
+        costs[i] = g;
+        stamps[i] = iteration;
+    }
+}
@@ -1,42 +1,313 @@
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.PriorityQueue;
 
+/*
+  Uniform-cost search. The open list, closed list and cost map of a run
+  are kept and cleared by the next run instead of being allocated again,
+  so an engine that solves many instances (see Solver) reuses the buffers
+  they have grown to. The closed list and cost map can depend on the state
+  space and are replaced after setStateSpace.
+*/
 public class UniformCostSearch extends SearchAlgorithmBase {
 
-    private PriorityQueue<SearchNode> openList;
-    private HashSet<State> closedList;
+    private OpenList<SearchNode> openList;
+    private VisitedSet closedList;
+    private StateCostMap bestCosts;
+    private NodeStore nodes;
+    private IntOpenList intOpenList;
+    private LongIntHashMap nodeIndex;
     private ArrayList<Action> optimalPath;
+    // null for uniform-cost search; set by AStarSearch
+    protected Heuristic heuristic;
 
     public UniformCostSearch(String[] args) {
         super(args);
     }
 
+    public UniformCostSearch(StateSpace stateSpace, SearchOptions options) {
+        super(stateSpace, options);
+    }
+
+    /*
+      Duplicate detection is selected by --dd:
+       - expansion: every successor is queued; duplicates are discarded
+         when they are removed from the open list (default)
+       - generation: successors are checked against the closed list and
+         the cheapest known cost of queued states before they are queued
+    */
     @Override
     protected ArrayList<Action> run() {
-        expandedStates = 0;
-        openList = new PriorityQueue<SearchNode>(1, (a, b) -> a.pathCost - b.pathCost);
-        openList.add(new SearchNode(stateSpace.init()));
-        closedList = new HashSet<State>();
+        String nodeKind = options.get("nodes", "objects");
+        if (nodeKind.equals("compact")) {
+            return runCompact();
+        } else if (!nodeKind.equals("objects")) {
+            Errors.usageError("unknown node store: " + nodeKind);
+        }
+        String dd = options.get("dd", "expansion");
+        if (dd.equals("expansion")) {
+            return runExpansionDuplicateDetection();
+        } else if (dd.equals("generation")) {
+            return runGenerationDuplicateDetection();
+        } else {
+            Errors.usageError("unknown duplicate detection: " + dd);
+        }
+        return null;
+    }
+
+    @Override
+    protected void stateSpaceChanged() {
+        closedList = null;
+        bestCosts = null;
+    }
+
+    @Override
+    protected void releaseMemory() {
+        openList = null;
+        closedList = null;
+        bestCosts = null;
+        nodes = null;
+        intOpenList = null;
+        nodeIndex = null;
+    }
+
+    /*
+      Order of the open list: g, plus h if there is a heuristic. States
+      with a cached cost to the goal use that instead of h and end the
+      search like goals (see PlanCache).
+    */
+    protected int priority(State s, int pathCost) {
+        int cached = cachedCostToGo(s);
+        if (cached >= 0) {
+            return pathCost + cached;
+        }
+        if (heuristic == null) {
+            return pathCost;
+        }
+        return pathCost + heuristic.estimate(s);
+    }
+
+    protected int priority(SearchNode n) {
+        return priority(n.state, n.pathCost);
+    }
+
+    private ArrayList<Action> runExpansionDuplicateDetection() {
+        resetStatistics();
+        prepareLists();
+        SearchNode root = new SearchNode(stateSpace.init());
+        openList.add(root, priority(root));
         //for (ActionStatePair pair : stateSpace.succ(stateSpace.init())) {
         //    openList.add(new ElevatorSearchNode(stateSpace, new ElevatorSearchNode(), pair));
         //}
         while (!openList.isEmpty()) {
             SearchNode n = openList.remove();
-            if (!closedList.contains(n.state)) {
-                closedList.add(n.state);
-                if (this.stateSpace.isGoal(n.state)) {
-                    return n.extractPath(n);
+            if (closedList.add(n.state)) {
+                if (reachedGoal(n.state)) {
+                    return completePlan(n.extractPath(n), n.state);
                 }
                 expandedStates++;
-                for (ActionStatePair successor : this.stateSpace.succ(n.state)) {
-                    openList.add(new SearchNode(n, successor, successor.action.cost()));
+                this.stateSpace.forEachSuccessor(n.state, (action, successor) -> {
+                    generatedStates++;
+                    SearchNode child = new SearchNode(n, action, successor);
+                    openList.add(child, priority(child));
+                });
+                peakOpenListSize = Math.max(peakOpenListSize, openList.size());
+                if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                    checkpoint(openList.size(), closedList.size(), priority(n));
+                }
+            } else {
+                prunedStates++;
+            }
+        }
+        return unsolvable();
+    }
+
+    /*
+      bestCosts holds the cheapest path cost of every queued state. A state
+      leaves bestCosts when it is closed, so the index only ever covers the
+      open list. When a cheaper path to a queued state is found, the new
+      node is queued and the old entry becomes stale (lazy decrease-key);
+      stale entries are skipped when they are removed.
+    */
+    private ArrayList<Action> runGenerationDuplicateDetection() {
+        resetStatistics();
+        prepareLists();
+        if (bestCosts == null) {
+            bestCosts = createStateCostMap();
+        } else {
+            bestCosts.clear();
+        }
+        SearchNode root = new SearchNode(stateSpace.init());
+        openList.add(root, priority(root));
+        bestCosts.put(root.state, 0);
+        while (!openList.isEmpty()) {
+            SearchNode n = openList.remove();
+            int bestCost = bestCosts.get(n.state);
+            if (bestCost < 0 || bestCost < n.pathCost) {
+                // stale entry: the state is closed or queued more cheaply
+                continue;
+            }
+            bestCosts.remove(n.state);
+            closedList.add(n.state);
+            if (reachedGoal(n.state)) {
+                return completePlan(n.extractPath(n), n.state);
+            }
+            expandedStates++;
+            if (closedList instanceof PackedVisitedSet) {
+                expandPacked(n);
+            } else {
+                expand(n);
+            }
+            peakOpenListSize = Math.max(peakOpenListSize, openList.size());
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                checkpoint(openList.size(), closedList.size(), priority(n));
+            }
+        }
+        return unsolvable();
+    }
+
+    // empty open and closed lists, reusing those of the last run
+    private void prepareLists() {
+        if (openList == null) {
+            openList = createOpenList();
+        } else {
+            openList.clear();
+        }
+        if (closedList == null) {
+            closedList = createVisitedSet();
+        } else {
+            closedList.clear();
+        }
+    }
+
+    private void expand(SearchNode n) {
+        this.stateSpace.forEachSuccessor(n.state, (action, successor) -> {
+            generatedStates++;
+            if (closedList.contains(successor)) {
+                prunedStates++;
+                return;
+            }
+            int pathCost = n.pathCost + action.cost();
+            int queuedCost = bestCosts.get(successor);
+            if (queuedCost >= 0) {
+                if (queuedCost <= pathCost) {
+                    prunedStates++;
+                    return;
+                }
+                reopenedStates++;
+            }
+            bestCosts.put(successor, pathCost);
+            SearchNode child = new SearchNode(n, action, successor);
+            openList.add(child, priority(child));
+        });
+    }
+
+    /*
+      Same as expand, but successors arrive as packed IDs and are only
+      unpacked into State objects once they turn out to be worth queueing.
+    */
+    private void expandPacked(SearchNode n) {
+        PackedStateSpace packedSpace = (PackedStateSpace) stateSpace;
+        PackedVisitedSet packedClosedList = (PackedVisitedSet) closedList;
+        PackedStateCostMap packedCosts = (PackedStateCostMap) bestCosts;
+        packedSpace.forEachPackedSuccessor(packedSpace.pack(n.state), (action, successor) -> {
+            generatedStates++;
+            if (packedClosedList.contains(successor)) {
+                prunedStates++;
+                return;
+            }
+            int pathCost = n.pathCost + action.cost();
+            int queuedCost = packedCosts.get(successor);
+            if (queuedCost >= 0) {
+                if (queuedCost <= pathCost) {
+                    prunedStates++;
+                    return;
+                }
+                reopenedStates++;
+            }
+            packedCosts.put(successor, pathCost);
+            SearchNode child = new SearchNode(n, action, packedSpace.unpack(successor));
+            openList.add(child, priority(child));
+        });
+    }
+
+    /*
+      --nodes=compact: nodes live in a NodeStore and are addressed by int
+      indices; the open list holds indices and nodeIndex maps packed state
+      IDs (canonical IDs with --symmetry) to nodes. Duplicates are detected
+      on generation. A cheaper path to an open node updates it in place and
+      queues its index again; the older entry is skipped because the node
+      is closed by then.
+    */
+    private ArrayList<Action> runCompact() {
+        if (!(stateSpace instanceof PackedStateSpace) || !((PackedStateSpace) stateSpace).fitsInLong()) {
+            Errors.usageError("--nodes=compact needs states that can be packed into a long");
+        }
+        PackedStateSpace packedSpace = (PackedStateSpace) stateSpace;
+        resetStatistics();
+        if (nodes == null) {
+            nodes = new NodeStore();
+            intOpenList = createIntOpenList();
+            nodeIndex = new LongIntHashMap();
+        } else {
+            nodes.clear();
+            intOpenList.clear();
+            nodeIndex.clear();
+        }
+
+        State init = stateSpace.init();
+        long initId = packedSpace.pack(init);
+        int root = nodes.add(initId, -1, -1, 0);
+        nodeIndex.put(symmetry == null ? initId : symmetry.canonical(initId), root);
+        intOpenList.add(root, priority(init, 0));
+        while (!intOpenList.isEmpty()) {
+            int n = intOpenList.remove();
+            if (nodes.isClosed(n)) {
+                continue;
+            }
+            nodes.close(n);
+            long id = nodes.state(n);
+            State state = packedSpace.unpack(id);
+            if (reachedGoal(state)) {
+                return completePlan(extractPath(packedSpace, n), state);
+            }
+            expandedStates++;
+            int pathCost = nodes.cost(n);
+            packedSpace.forEachPackedSuccessor(id, (action, successor) -> {
+                generatedStates++;
+                int cost = pathCost + action.cost();
+                long key = symmetry == null ? successor : symmetry.canonical(successor);
+                int child = nodeIndex.get(key, -1);
+                if (child >= 0) {
+                    if (nodes.isClosed(child) || nodes.cost(child) <= cost) {
+                        prunedStates++;
+                        return;
+                    }
+                    reopenedStates++;
+                    nodes.update(child, successor, n, packedSpace.actionCode(action), cost);
+                } else {
+                    child = nodes.add(successor, n, packedSpace.actionCode(action), cost);
+                    nodeIndex.put(key, child);
                 }
+                int priority = heuristic == null && !usesCachedCosts() ? cost
+                               : priority(packedSpace.unpack(successor), cost);
+                intOpenList.add(child, priority);
+            });
+            peakOpenListSize = Math.max(peakOpenListSize, intOpenList.size());
+            if ((expandedStates & CHECKPOINT_MASK) == 0) {
+                // every expanded node is closed exactly once
+                checkpoint(intOpenList.size(), expandedStates, priority(state, pathCost));
             }
         }
-        System.out.println("State-Space is unsolvable.");
-        return new ArrayList<Action>();
+        return unsolvable();
+    }
+
+    private ArrayList<Action> extractPath(PackedStateSpace packedSpace, int node) {
+        ArrayList<Action> path = new ArrayList<Action>();
+        for (int n = node; nodes.parent(n) >= 0; n = nodes.parent(n)) {
+            path.add(packedSpace.action(nodes.action(n)));
+        }
+        Collections.reverse(path);
+        return path;
     }
 
     public class SearchNode {
@@ -52,11 +323,11 @@ public class UniformCostSearch extends SearchAlgorithmBase {
             this.pathCost = 0;
         }
 
-        public SearchNode(SearchNode parent, ActionStatePair pair, int actioncost){
-            this.state = pair.state;
+        public SearchNode(SearchNode parent, Action action, State state){
+            this.state = state;
             this.parent = parent;
-            this.action = pair.action;
-            this.pathCost = parent.pathCost + actioncost;
+            this.action = action;
+            this.pathCost = parent.pathCost + action.cost();
         }
 
         public ArrayList<Action> extractPath(SearchNode n) {
@@ -70,7 +341,11 @@ public class UniformCostSearch extends SearchAlgorithmBase {
         }
     }
     public static void main(String args[]){
-        UniformCostSearch search = new UniformCostSearch(args);
-        search.runSearchAlgorithm();
+        try {
+            UniformCostSearch search = new UniformCostSearch(args);
+            search.runSearchAlgorithm();
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
     }
 }
@@ -3,7 +3,15 @@ import java.util.ArrayList;
 
 
 public class UniformCostSearchTest {
-    public static void main(String args[]){
+    public static void main(String args[]) {
+        try {
+            dumpOptimalPath(args);
+        } catch (SearchError e) {
+            Errors.exit(e);
+        }
+    }
+
+    private static void dumpOptimalPath(String args[]) {
         UniformCostSearch search = new UniformCostSearch(args);
         StateSpace stateSpace = search.stateSpace;
         State state = search.stateSpace.init();
@@ -0,0 +1,10 @@
+/*
+  Set of states used as the closed list of a search.
+*/
+public interface VisitedSet {
+    // adds s and returns true if it was not contained yet
+    public boolean add(State s);
+    public boolean contains(State s);
+    public int size();
+    public void clear();
+}